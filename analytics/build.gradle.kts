@@ -0,0 +1,24 @@
+// Pure-JVM heart-rate logic shared with :app, so it can be unit tested and benchmarked without Android
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    // Reports allocation rate per operation next to throughput
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+}
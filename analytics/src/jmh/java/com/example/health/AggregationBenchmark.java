@@ -0,0 +1,102 @@
+package com.example.health;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-sample cost of the live ingest path: rollup accumulation, the sparkline ring buffer, duplicate
+ * detection and anomaly detection. All of them are expected to be allocation-free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AggregationBenchmark {
+
+    private static final int SAMPLES = 10_000;
+
+    private long[] timestamps;
+    private float[] values;
+    private RollupAccumulator[] accumulators;
+    private HeartRateRingBuffer ringBuffer;
+    private SampleChangeDetector detector;
+    private AnomalyDetector anomalyDetector;
+    private long anomalyEvents;
+    private Long[] boxedTimestamps;
+    private Long[] boxedValues;
+
+    @Setup
+    public void setUp() {
+        timestamps = new long[SAMPLES];
+        values = new float[SAMPLES];
+        boxedTimestamps = new Long[SAMPLES];
+        boxedValues = new Long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 1_000L;
+            values[i] = 60 + i % 50;
+            boxedTimestamps[i] = timestamps[i];
+            boxedValues[i] = (long) values[i];
+        }
+        RollupResolution[] resolutions = RollupResolution.values();
+        accumulators = new RollupAccumulator[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            accumulators[i] = new RollupAccumulator(resolutions[i]);
+        }
+        ringBuffer = new HeartRateRingBuffer(300, TimeUnit.MINUTES.toMillis(5));
+        detector = new SampleChangeDetector();
+        anomalyDetector = new AnomalyDetector(event -> anomalyEvents++);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double rollups() {
+        double checksum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            for (RollupAccumulator accumulator : accumulators) {
+                if (accumulator.getCount() == 0 || accumulator.isOutsideBucket(timestamps[i])) {
+                    checksum += accumulator.getMean();
+                    accumulator.reset(timestamps[i]);
+                }
+                accumulator.add(timestamps[i], values[i]);
+            }
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int ringBuffer() {
+        ringBuffer.clear();
+        for (int i = 0; i < SAMPLES; i++) {
+            ringBuffer.add(timestamps[i], values[i]);
+        }
+        return ringBuffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long changeDetection() {
+        detector.reset();
+        for (int i = 0; i < SAMPLES; i++) {
+            detector.isNewSample(false, null, boxedTimestamps[i], boxedValues[i], null);
+        }
+        return detector.getAcceptedCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public long anomalyDetection() {
+        anomalyDetector.reset();
+        for (int i = 0; i < SAMPLES; i++) {
+            anomalyDetector.onSample(timestamps[i], values[i]);
+        }
+        return anomalyEvents;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.health;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Decoding a month of 1 Hz samples from the memory-mapped archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArchiveScanBenchmark {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final int MONTH_OF_SAMPLES = 30 * 24 * 3600;
+
+    private File directory;
+    private HeartRateArchive archive;
+    private final Checksum checksum = new Checksum();
+
+    private static final class Checksum implements HeartRateArchive.SampleVisitor {
+        double sum;
+
+        @Override
+        public void onSample(long timestampMillis, float bpm) {
+            sum += bpm;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-bench").toFile();
+        archive = HeartRateArchive.open(directory, "patient");
+        for (int i = 0; i < MONTH_OF_SAMPLES; i++) {
+            archive.append(START + i * 1_000L + (i % 4) * 10, 60f + (i % 60));
+        }
+        archive.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public double scanMonth() throws IOException {
+        checksum.sum = 0;
+        archive.scan(Long.MIN_VALUE, Long.MAX_VALUE, checksum);
+        return checksum.sum;
+    }
+
+    @Benchmark
+    public double scanDay() throws IOException {
+        checksum.sum = 0;
+        long from = START + 10L * 24 * 3600 * 1000;
+        archive.scan(from, from + 24L * 3600 * 1000, checksum);
+        return checksum.sum;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.health;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One LTTB pass over a long series, as done for every chart gesture on the history screen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DownsamplerBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"200", "1000"})
+    public int threshold;
+
+    private HeartRateSeries series;
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        long[] timestamps = new long[size];
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = 1_000L * i;
+            values[i] = 80f + 20f * (float) Math.sin(i / 50.0) + (i % 7);
+        }
+        series = new HeartRateSeries(timestamps, values, size);
+        out = new int[threshold];
+    }
+
+    @Benchmark
+    public int lttb() {
+        return Downsampler.lttb(series, 0, size, threshold, out);
+    }
+}
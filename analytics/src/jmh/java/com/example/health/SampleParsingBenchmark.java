@@ -0,0 +1,56 @@
+package com.example.health;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing a page of history documents, as handed back by Firestore, into a {@link HeartRateSeries}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SampleParsingBenchmark {
+
+    @Param({"200", "10000"})
+    public int pageSize;
+
+    private Object[] timestamps;
+    private Object[] values;
+
+    @Setup
+    public void setUp() {
+        timestamps = new Object[pageSize];
+        values = new Object[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            timestamps[i] = new Date(1_700_000_000_000L + i * 5_000L);
+            // Firestore returns whole numbers as Long and the rest as Double
+            values[i] = i % 2 == 0 ? (Object) (long) (60 + i % 40) : (Object) (60.5 + i % 40);
+        }
+    }
+
+    @Benchmark
+    public HeartRateSeries parsePage() {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            builder.addRaw(timestamps[i], values[i]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void classifyPage(Blackhole blackhole) {
+        for (int i = 0; i < pageSize; i++) {
+            blackhole.consume(HeartRateZone.classify(HeartRateSampleParser.parseBpm(values[i])));
+        }
+    }
+}
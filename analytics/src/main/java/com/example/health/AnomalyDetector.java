@@ -0,0 +1,203 @@
+package com.example.health;
+
+/**
+ * Incremental anomaly detection over the live heart-rate stream. Each sample updates a fast and a
+ * slow time-aware EWMA, an exponentially weighted variance around the slow baseline and Welford
+ * mean/variance for the whole session, then evaluates the rules below. Work per sample is constant
+ * and nothing is allocated unless an event is emitted.
+ *
+ * <ul>
+ * <li>Tachycardia / bradycardia: the fast EWMA stays above {@link HeartRateZone#HIGH_THRESHOLD_BPM} /
+ * below {@link HeartRateZone#LOW_THRESHOLD_BPM} for {@link #SUSTAIN_MS}; resolves once it is back
+ * inside the normal range by {@link #HYSTERESIS_BPM}.</li>
+ * <li>Sudden jump: a sample differs from the slow baseline by more than {@link #JUMP_MIN_BPM} and
+ * {@link #JUMP_SIGMAS} standard deviations, at most once per {@link #JUMP_REFRACTORY_MS}.</li>
+ * <li>Signal dropout: no sample for {@link #DROPOUT_MS}, detected by {@link #onTick(long)} or by the
+ * next sample; resolves when samples resume.</li>
+ * </ul>
+ *
+ * Not thread-safe.
+ */
+public final class AnomalyDetector {
+
+    public interface Listener {
+        void onAnomaly(AnomalyEvent event);
+    }
+
+    public static final long SUSTAIN_MS = 60_000L;
+    public static final float HYSTERESIS_BPM = 5f;
+    public static final float JUMP_MIN_BPM = 25f;
+    public static final float JUMP_SIGMAS = 4f;
+    public static final long JUMP_REFRACTORY_MS = 60_000L;
+    public static final long DROPOUT_MS = 30_000L;
+    // Samples needed before the baseline variance is trusted for jump detection
+    static final int WARMUP_SAMPLES = 30;
+    private static final double FAST_TAU_MS = 10_000.0;
+    private static final double SLOW_TAU_MS = 300_000.0;
+
+    private final Listener listener;
+
+    private long sampleCount;
+    private long lastTimestamp;
+    private float lastBpm;
+    private double fastMean;
+    private double slowMean;
+    private double slowVariance;
+    private double sessionMean;
+    private double sessionM2;
+
+    private long highSince = -1;
+    private long lowSince = -1;
+    private boolean tachycardia;
+    private boolean bradycardia;
+    private boolean dropout;
+    private long lastJumpAt = -1;
+
+    public AnomalyDetector(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void onSample(long timestampMillis, float bpm) {
+        if (sampleCount > 0 && timestampMillis <= lastTimestamp) return;
+
+        if (dropout) {
+            dropout = false;
+            emit(AnomalyEvent.Type.SIGNAL_DROPOUT, AnomalyEvent.Phase.RESOLVED, timestampMillis, bpm);
+        } else if (sampleCount > 0 && timestampMillis - lastTimestamp >= DROPOUT_MS) {
+            // The gap was only noticed now because no tick ran during it
+            emit(AnomalyEvent.Type.SIGNAL_DROPOUT, AnomalyEvent.Phase.ONSET, lastTimestamp, lastBpm);
+            emit(AnomalyEvent.Type.SIGNAL_DROPOUT, AnomalyEvent.Phase.RESOLVED, timestampMillis, bpm);
+        }
+
+        if (sampleCount == 0) {
+            fastMean = bpm;
+            slowMean = bpm;
+            slowVariance = 0;
+        } else {
+            checkJump(timestampMillis, bpm);
+            long elapsed = timestampMillis - lastTimestamp;
+            fastMean += weight(elapsed, FAST_TAU_MS) * (bpm - fastMean);
+            double slowWeight = weight(elapsed, SLOW_TAU_MS);
+            double diff = bpm - slowMean;
+            slowMean += slowWeight * diff;
+            slowVariance = (1 - slowWeight) * (slowVariance + slowWeight * diff * diff);
+        }
+
+        sampleCount++;
+        double sessionDiff = bpm - sessionMean;
+        sessionMean += sessionDiff / sampleCount;
+        sessionM2 += sessionDiff * (bpm - sessionMean);
+
+        lastTimestamp = timestampMillis;
+        lastBpm = bpm;
+        checkSustained(timestampMillis, bpm);
+    }
+
+    /**
+     * Reports a dropout if no sample has arrived for {@link #DROPOUT_MS} by {@code nowMillis}.
+     * Call periodically while measuring.
+     */
+    public void onTick(long nowMillis) {
+        if (sampleCount > 0 && !dropout && nowMillis - lastTimestamp >= DROPOUT_MS) {
+            dropout = true;
+            emit(AnomalyEvent.Type.SIGNAL_DROPOUT, AnomalyEvent.Phase.ONSET, lastTimestamp, lastBpm);
+        }
+    }
+
+    public void reset() {
+        sampleCount = 0;
+        sessionMean = 0;
+        sessionM2 = 0;
+        highSince = -1;
+        lowSince = -1;
+        tachycardia = false;
+        bradycardia = false;
+        dropout = false;
+        lastJumpAt = -1;
+    }
+
+    private void checkJump(long timestampMillis, float bpm) {
+        if (sampleCount < WARMUP_SAMPLES) return;
+        if (lastJumpAt >= 0 && timestampMillis - lastJumpAt < JUMP_REFRACTORY_MS) return;
+        double deviation = Math.abs(bpm - slowMean);
+        if (deviation > JUMP_MIN_BPM && deviation > JUMP_SIGMAS * Math.sqrt(slowVariance)) {
+            lastJumpAt = timestampMillis;
+            emit(AnomalyEvent.Type.SUDDEN_JUMP, AnomalyEvent.Phase.ONSET, timestampMillis, bpm);
+        }
+    }
+
+    private void checkSustained(long timestampMillis, float bpm) {
+        if (fastMean > HeartRateZone.HIGH_THRESHOLD_BPM) {
+            if (highSince < 0) highSince = timestampMillis;
+            if (!tachycardia && timestampMillis - highSince >= SUSTAIN_MS) {
+                tachycardia = true;
+                emit(AnomalyEvent.Type.TACHYCARDIA, AnomalyEvent.Phase.ONSET, timestampMillis, bpm);
+            }
+        } else {
+            highSince = -1;
+            if (tachycardia && fastMean < HeartRateZone.HIGH_THRESHOLD_BPM - HYSTERESIS_BPM) {
+                tachycardia = false;
+                emit(AnomalyEvent.Type.TACHYCARDIA, AnomalyEvent.Phase.RESOLVED, timestampMillis, bpm);
+            }
+        }
+
+        if (fastMean < HeartRateZone.LOW_THRESHOLD_BPM) {
+            if (lowSince < 0) lowSince = timestampMillis;
+            if (!bradycardia && timestampMillis - lowSince >= SUSTAIN_MS) {
+                bradycardia = true;
+                emit(AnomalyEvent.Type.BRADYCARDIA, AnomalyEvent.Phase.ONSET, timestampMillis, bpm);
+            }
+        } else {
+            lowSince = -1;
+            if (bradycardia && fastMean > HeartRateZone.LOW_THRESHOLD_BPM + HYSTERESIS_BPM) {
+                bradycardia = false;
+                emit(AnomalyEvent.Type.BRADYCARDIA, AnomalyEvent.Phase.RESOLVED, timestampMillis, bpm);
+            }
+        }
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public float getBaselineBpm() {
+        return (float) slowMean;
+    }
+
+    public float getBaselineStdDev() {
+        return (float) Math.sqrt(slowVariance);
+    }
+
+    public float getShortTermBpm() {
+        return (float) fastMean;
+    }
+
+    public float getSessionMean() {
+        return (float) sessionMean;
+    }
+
+    public float getSessionVariance() {
+        return sampleCount < 2 ? 0f : (float) (sessionM2 / (sampleCount - 1));
+    }
+
+    public boolean isTachycardia() {
+        return tachycardia;
+    }
+
+    public boolean isBradycardia() {
+        return bradycardia;
+    }
+
+    public boolean isDropout() {
+        return dropout;
+    }
+
+    private void emit(AnomalyEvent.Type type, AnomalyEvent.Phase phase, long timestampMillis, float bpm) {
+        listener.onAnomaly(new AnomalyEvent(type, phase, timestampMillis, bpm, (float) slowMean));
+    }
+
+    // EWMA weight for irregularly spaced samples: the same decay per unit of time regardless of rate
+    private static double weight(long elapsedMillis, double tauMillis) {
+        return 1 - Math.exp(-elapsedMillis / tauMillis);
+    }
+}
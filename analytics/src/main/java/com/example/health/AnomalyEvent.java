@@ -0,0 +1,77 @@
+package com.example.health;
+
+/**
+ * A change in the anomaly state of the live heart-rate stream, emitted by {@link AnomalyDetector}.
+ * Sustained conditions produce an {@link Phase#ONSET} and later a {@link Phase#RESOLVED} event;
+ * sudden jumps are single {@link Phase#ONSET} events.
+ */
+public final class AnomalyEvent {
+
+    public enum Type {
+        TACHYCARDIA("tachycardia"),
+        BRADYCARDIA("bradycardia"),
+        SUDDEN_JUMP("sudden_jump"),
+        SIGNAL_DROPOUT("signal_dropout");
+
+        private final String id;
+
+        Type(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public enum Phase {
+        ONSET,
+        RESOLVED
+    }
+
+    private final Type type;
+    private final Phase phase;
+    private final long timestampMillis;
+    private final float bpm;
+    private final float baselineBpm;
+
+    public AnomalyEvent(Type type, Phase phase, long timestampMillis, float bpm, float baselineBpm) {
+        this.type = type;
+        this.phase = phase;
+        this.timestampMillis = timestampMillis;
+        this.bpm = bpm;
+        this.baselineBpm = baselineBpm;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public boolean isOnset() {
+        return phase == Phase.ONSET;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * The sample that triggered the event; for dropouts, the last sample before the gap.
+     */
+    public float getBpm() {
+        return bpm;
+    }
+
+    public float getBaselineBpm() {
+        return baselineBpm;
+    }
+
+    @Override
+    public String toString() {
+        return type.getId() + " " + phase + " at " + timestampMillis + " (" + bpm + " bpm, baseline " + baselineBpm + ")";
+    }
+}
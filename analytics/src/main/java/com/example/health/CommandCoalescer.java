@@ -0,0 +1,124 @@
+package com.example.health;
+
+import java.util.TreeMap;
+
+/**
+ * Sequencing for a last-writer-wins command channel to a device. Every sent command gets a new,
+ * strictly increasing ID. Requests only record the latest intent: while a command is held back or a
+ * write is in flight, newer requests replace older ones, and nothing is sent when the intent matches
+ * the command the device was last given. The device acknowledges the highest command ID it has
+ * applied, which gives each command a round-trip time and implicitly acknowledges the older commands
+ * it superseded. Not thread-safe.
+ */
+public final class CommandCoalescer {
+
+    // Old device builds never ack; keep only the most recent unacknowledged commands
+    static final int MAX_UNACKED = 16;
+
+    private final TreeMap<Long, Long> unackedSentAt = new TreeMap<>();
+    private long lastId;
+    private String desired;
+    private String lastSent;
+    private long lastSentId = -1;
+    private long inFlightId = -1;
+    private int coalescedCount;
+
+    public CommandCoalescer(long lastIssuedId) {
+        this.lastId = lastIssuedId;
+    }
+
+    /**
+     * Records {@code command} as the latest intent, replacing any intent that has not been sent yet.
+     */
+    public void request(String command) {
+        if (hasPending()) {
+            coalescedCount++;
+        }
+        desired = command;
+    }
+
+    /**
+     * Whether the latest intent differs from the last command sent.
+     */
+    public boolean hasPending() {
+        return desired != null && !desired.equals(lastSent);
+    }
+
+    public boolean isInFlight() {
+        return inFlightId >= 0;
+    }
+
+    /**
+     * Issues the pending intent under a new ID and marks its write as in flight. Returns -1 if there is
+     * nothing to send or the previous write has not completed yet.
+     */
+    public long next(long nowMillis) {
+        if (isInFlight() || !hasPending()) return -1;
+        long id = ++lastId;
+        lastSent = desired;
+        lastSentId = id;
+        inFlightId = id;
+        unackedSentAt.put(id, nowMillis);
+        if (unackedSentAt.size() > MAX_UNACKED) {
+            unackedSentAt.pollFirstEntry();
+        }
+        return id;
+    }
+
+    public String getLastSent() {
+        return lastSent;
+    }
+
+    /**
+     * The write carrying command {@code id} finished. A write that will not be retried drops its intent
+     * and leaves the device state unknown, so whatever is requested next is sent.
+     */
+    public void onWriteFinished(long id, boolean delivered) {
+        if (id == inFlightId) {
+            inFlightId = -1;
+        }
+        if (!delivered) {
+            unackedSentAt.remove(id);
+            if (id == lastSentId) {
+                if (desired != null && desired.equals(lastSent)) {
+                    desired = null;
+                }
+                lastSent = null;
+            }
+        }
+    }
+
+    /**
+     * Adopts the command ID and command currently stored for the device, which may have been written
+     * by another client or an earlier run. IDs only ever move forward.
+     */
+    public void observe(long remoteId, String remoteCommand) {
+        lastId = Math.max(lastId, remoteId);
+        if (!isInFlight() && remoteId > lastSentId && remoteCommand != null) {
+            lastSent = remoteCommand;
+            lastSentId = remoteId;
+        }
+    }
+
+    /**
+     * Handles an ack for every command up to {@code ackedId}. Returns the round-trip time of that
+     * command, or -1 if it was not sent from here or was already acknowledged.
+     */
+    public long onAck(long ackedId, long nowMillis) {
+        Long sentAt = unackedSentAt.get(ackedId);
+        unackedSentAt.headMap(ackedId, true).clear();
+        return sentAt != null ? nowMillis - sentAt : -1;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public int getUnackedCount() {
+        return unackedSentAt.size();
+    }
+
+    public int getCoalescedCount() {
+        return coalescedCount;
+    }
+}
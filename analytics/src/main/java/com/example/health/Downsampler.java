@@ -0,0 +1,87 @@
+package com.example.health;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling. Picks the indices of the samples that best
+ * preserve the visual shape of a series (peaks and troughs included) when it has to be drawn
+ * with fewer points than it contains.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Selects at most {@code threshold} indices from {@code [from, to)} of {@code series} into {@code out},
+     * in ascending order, and returns how many were written. The first and last sample of the range are
+     * always kept. Allocates nothing; {@code out} must hold at least {@code min(threshold, to - from)} ints.
+     */
+    public static int lttb(HeartRateSeries series, int from, int to, int threshold, int[] out) {
+        int length = to - from;
+        if (length <= 0) {
+            return 0;
+        }
+        if (threshold >= length || threshold < 3) {
+            int count = Math.min(length, Math.max(threshold, 0));
+            if (count == length) {
+                for (int i = 0; i < length; i++) {
+                    out[i] = from + i;
+                }
+                return length;
+            }
+            // Too few points requested for buckets: keep the endpoints only
+            out[0] = from;
+            if (count > 1) {
+                out[1] = to - 1;
+            }
+            return count;
+        }
+
+        // First and last points are fixed; the rest are split into threshold - 2 buckets
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int selected = from;
+        int written = 0;
+        out[written++] = selected;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int bucketStart = from + 1 + (int) (bucket * bucketSize);
+            int bucketEnd = from + 1 + (int) ((bucket + 1) * bucketSize);
+
+            // Average of the next bucket is the third vertex of the triangle
+            int nextStart = bucketEnd;
+            int nextEnd = Math.min(from + 1 + (int) ((bucket + 2) * bucketSize), to);
+            if (nextStart >= nextEnd) {
+                nextStart = to - 1;
+                nextEnd = to;
+            }
+            double averageX = 0;
+            double averageY = 0;
+            long origin = series.timestampAt(from);
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += series.timestampAt(i) - origin;
+                averageY += series.valueAt(i);
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            double selectedX = series.timestampAt(selected) - origin;
+            double selectedY = series.valueAt(selected);
+            double maxArea = -1;
+            int maxIndex = bucketStart;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                double x = series.timestampAt(i) - origin;
+                double area = Math.abs((selectedX - averageX) * (series.valueAt(i) - selectedY)
+                        - (selectedX - x) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            selected = maxIndex;
+            out[written++] = selected;
+        }
+
+        out[written++] = to - 1;
+        return written;
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.health;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Append-only, compressed on-disk archive of one patient's heart-rate samples.
+ *
+ * <p>Samples are grouped into blocks of up to {@link #BLOCK_SIZE}. Within a block, timestamps are
+ * stored as zig-zag varint delta-of-deltas and BPM (in tenths) as zig-zag varint deltas; the first
+ * timestamp lives in the block index. A regular 1 Hz stream costs about two bytes per sample. The
+ * index is a separate file of fixed-size records (first/last timestamp, offset, count, length) that is
+ * held in primitive arrays, so a range scan binary-searches the index and decodes only the blocks it
+ * needs from a memory-mapped view of the data file without allocating per sample.
+ *
+ * <p>Samples must arrive in increasing timestamp order; older ones are rejected. The data file is
+ * written before its index record, so a crash mid-append loses at most the unindexed tail, which is
+ * truncated on the next open. All methods are synchronized.
+ */
+public final class HeartRateArchive implements Closeable {
+
+    public interface SampleVisitor {
+        void onSample(long timestampMillis, float bpm);
+    }
+
+    public static final int BLOCK_SIZE = 1024;
+    private static final int INDEX_RECORD_BYTES = 32;
+    private static final float BPM_SCALE = 10f;
+    // Worst case per sample: a 10-byte timestamp varint and a 5-byte value varint
+    private static final int MAX_SAMPLE_BYTES = 15;
+
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+
+    private long[] blockFirst = new long[64];
+    private long[] blockLast = new long[64];
+    private long[] blockOffset = new long[64];
+    private int[] blockCount = new int[64];
+    private int[] blockLength = new int[64];
+    private int blockTotal;
+    private long dataSize;
+    private long sampleTotal;
+
+    private final long[] pendingTimestamps = new long[BLOCK_SIZE];
+    private final int[] pendingValues = new int[BLOCK_SIZE];
+    private int pendingSize;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private final byte[] encodeBuffer = new byte[BLOCK_SIZE * MAX_SAMPLE_BYTES];
+    private final ByteBuffer indexRecord = ByteBuffer.allocate(INDEX_RECORD_BYTES).order(ByteOrder.BIG_ENDIAN);
+    private MappedByteBuffer mapped;
+    private int readPosition;
+
+    /**
+     * Opens (or creates) the archive {@code name} in {@code directory}, as {@code name.hra} plus its
+     * {@code name.hri} index.
+     */
+    public static HeartRateArchive open(File directory, String name) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return new HeartRateArchive(new File(directory, name + ".hra"), new File(directory, name + ".hri"));
+    }
+
+    private HeartRateArchive(File dataFile, File indexFile) throws IOException {
+        dataChannel = FileChannel.open(dataFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        readIndex();
+    }
+
+    private void readIndex() throws IOException {
+        long records = indexChannel.size() / INDEX_RECORD_BYTES;
+        ByteBuffer index = ByteBuffer.allocate((int) (records * INDEX_RECORD_BYTES));
+        while (index.hasRemaining()) {
+            if (indexChannel.read(index, index.position()) < 0) break;
+        }
+        index.flip();
+        for (long i = 0; i < records; i++) {
+            long first = index.getLong();
+            long last = index.getLong();
+            long offset = index.getLong();
+            int count = index.getInt();
+            int length = index.getInt();
+            if (offset + length > dataChannel.size()) break;
+            addBlock(first, last, offset, count, length);
+        }
+        // Drop a torn index record and any block data that never got an index record
+        indexChannel.truncate((long) blockTotal * INDEX_RECORD_BYTES);
+        dataChannel.truncate(dataSize);
+        if (blockTotal > 0) {
+            lastTimestamp = blockLast[blockTotal - 1];
+        }
+    }
+
+    /**
+     * Appends a sample. Returns {@code false} without storing it if it is not newer than the last one.
+     */
+    public synchronized boolean append(long timestampMillis, float bpm) throws IOException {
+        if (timestampMillis <= lastTimestamp || Float.isNaN(bpm)) {
+            return false;
+        }
+        pendingTimestamps[pendingSize] = timestampMillis;
+        pendingValues[pendingSize] = Math.round(bpm * BPM_SCALE);
+        pendingSize++;
+        lastTimestamp = timestampMillis;
+        if (pendingSize == BLOCK_SIZE) {
+            writePendingBlock();
+        }
+        return true;
+    }
+
+    /**
+     * Writes the partially filled block, if any, and forces both files to storage.
+     */
+    public synchronized void flush() throws IOException {
+        writePendingBlock();
+        dataChannel.force(false);
+        indexChannel.force(false);
+    }
+
+    /**
+     * Visits every sample with {@code fromInclusive <= timestamp < toExclusive} in timestamp order,
+     * including samples not yet written to disk. Returns the number of samples visited.
+     */
+    public synchronized int scan(long fromInclusive, long toExclusive, SampleVisitor visitor) throws IOException {
+        int visited = 0;
+        int firstBlock = firstBlockEndingAtOrAfter(fromInclusive);
+        int endBlock = firstBlock;
+        while (endBlock < blockTotal && blockFirst[endBlock] < toExclusive) {
+            endBlock++;
+        }
+        if (firstBlock < endBlock) {
+            long regionStart = blockOffset[firstBlock];
+            long regionEnd = blockOffset[endBlock - 1] + blockLength[endBlock - 1];
+            mapped = dataChannel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+            for (int block = firstBlock; block < endBlock; block++) {
+                readPosition = (int) (blockOffset[block] - regionStart);
+                visited += decodeBlock(block, fromInclusive, toExclusive, visitor);
+            }
+            mapped = null;
+        }
+        for (int i = 0; i < pendingSize; i++) {
+            long timestamp = pendingTimestamps[i];
+            if (timestamp >= toExclusive) break;
+            if (timestamp >= fromInclusive) {
+                visitor.onSample(timestamp, pendingValues[i] / BPM_SCALE);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Loads a range into a {@link HeartRateSeries}; allocates only the series arrays.
+     */
+    public synchronized HeartRateSeries loadRange(long fromInclusive, long toExclusive) throws IOException {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(BLOCK_SIZE);
+        scan(fromInclusive, toExclusive, builder::add);
+        return builder.build();
+    }
+
+    public synchronized long size() {
+        return sampleTotal + pendingSize;
+    }
+
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized int getBlockCount() {
+        return blockTotal;
+    }
+
+    public synchronized long getDataBytes() {
+        return dataSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            dataChannel.close();
+            indexChannel.close();
+        }
+    }
+
+    private int decodeBlock(int block, long fromInclusive, long toExclusive, SampleVisitor visitor) {
+        int visited = 0;
+        int count = blockCount[block];
+        long timestamp = blockFirst[block];
+        long delta = 0;
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 1) {
+                delta = unzigzag(readVarLong());
+                timestamp += delta;
+            } else if (i > 1) {
+                delta += unzigzag(readVarLong());
+                timestamp += delta;
+            }
+            value += (int) unzigzag(readVarLong());
+            if (timestamp >= toExclusive) break;
+            if (timestamp >= fromInclusive) {
+                visitor.onSample(timestamp, value / BPM_SCALE);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private void writePendingBlock() throws IOException {
+        if (pendingSize == 0) return;
+
+        int length = 0;
+        long previousDelta = 0;
+        int previousValue = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            if (i > 0) {
+                long delta = pendingTimestamps[i] - pendingTimestamps[i - 1];
+                length = writeVarLong(zigzag(i == 1 ? delta : delta - previousDelta), length);
+                previousDelta = delta;
+            }
+            length = writeVarLong(zigzag(pendingValues[i] - previousValue), length);
+            previousValue = pendingValues[i];
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(encodeBuffer, 0, length);
+        long offset = dataSize;
+        while (payload.hasRemaining()) {
+            dataChannel.write(payload, offset + payload.position());
+        }
+
+        indexRecord.clear();
+        indexRecord.putLong(pendingTimestamps[0])
+                .putLong(pendingTimestamps[pendingSize - 1])
+                .putLong(offset)
+                .putInt(pendingSize)
+                .putInt(length)
+                .flip();
+        long indexPosition = (long) blockTotal * INDEX_RECORD_BYTES;
+        while (indexRecord.hasRemaining()) {
+            indexChannel.write(indexRecord, indexPosition + indexRecord.position());
+        }
+
+        addBlock(pendingTimestamps[0], pendingTimestamps[pendingSize - 1], offset, pendingSize, length);
+        pendingSize = 0;
+    }
+
+    private void addBlock(long first, long last, long offset, int count, int length) {
+        if (blockTotal == blockFirst.length) {
+            int capacity = blockTotal * 2;
+            blockFirst = Arrays.copyOf(blockFirst, capacity);
+            blockLast = Arrays.copyOf(blockLast, capacity);
+            blockOffset = Arrays.copyOf(blockOffset, capacity);
+            blockCount = Arrays.copyOf(blockCount, capacity);
+            blockLength = Arrays.copyOf(blockLength, capacity);
+        }
+        blockFirst[blockTotal] = first;
+        blockLast[blockTotal] = last;
+        blockOffset[blockTotal] = offset;
+        blockCount[blockTotal] = count;
+        blockLength[blockTotal] = length;
+        blockTotal++;
+        dataSize = offset + length;
+        sampleTotal += count;
+    }
+
+    private int firstBlockEndingAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = blockTotal;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blockLast[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int writeVarLong(long value, int position) {
+        while ((value & ~0x7FL) != 0) {
+            encodeBuffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        encodeBuffer[position++] = (byte) value;
+        return position;
+    }
+
+    private long readVarLong() {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = mapped.get(readPosition++);
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
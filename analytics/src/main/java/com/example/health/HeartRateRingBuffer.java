@@ -0,0 +1,75 @@
+package com.example.health;
+
+/**
+ * Fixed-capacity ring buffer of recent heart-rate samples stored in primitive arrays.
+ * Keeps samples newer than {@code windowMillis} relative to the latest sample; once full, the
+ * oldest sample is overwritten. Never allocates after construction.
+ */
+public final class HeartRateRingBuffer {
+
+    private final long[] timestamps;
+    private final float[] values;
+    private final long windowMillis;
+    private int head;
+    private int size;
+
+    public HeartRateRingBuffer(int capacity, long windowMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+        this.windowMillis = windowMillis;
+    }
+
+    public void add(long timestampMillis, float bpm) {
+        int tail = (head + size) % timestamps.length;
+        timestamps[tail] = timestampMillis;
+        values[tail] = bpm;
+        if (size < timestamps.length) {
+            size++;
+        } else {
+            head = (head + 1) % timestamps.length;
+        }
+        long cutoff = timestampMillis - windowMillis;
+        while (size > 1 && timestamps[head] < cutoff) {
+            head = (head + 1) % timestamps.length;
+            size--;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Timestamp of the {@code index}-th sample, oldest first.
+     */
+    public long timestampAt(int index) {
+        return timestamps[(head + index) % timestamps.length];
+    }
+
+    /**
+     * Value of the {@code index}-th sample, oldest first.
+     */
+    public float valueAt(int index) {
+        return values[(head + index) % values.length];
+    }
+
+    public long latestTimestamp() {
+        return timestampAt(size - 1);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.health;
+
+import java.util.Date;
+
+/**
+ * Converts raw Firestore field values into sample primitives. Callers unwrap Firestore
+ * {@code Timestamp}s with {@code toDate()} first, so this class stays free of Android and Firebase types.
+ */
+public final class HeartRateSampleParser {
+
+    private HeartRateSampleParser() {
+    }
+
+    /**
+     * Returns epoch millis for a {@link Date} or a numeric epoch-millis value, or {@code null} for anything else.
+     */
+    public static Long parseTimestamp(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the BPM for a numeric value (Firestore hands back either Long or Double), or {@code NaN}
+     * if the value is missing or not numeric.
+     */
+    public static float parseBpm(Object value) {
+        return value instanceof Number ? ((Number) value).floatValue() : Float.NaN;
+    }
+}
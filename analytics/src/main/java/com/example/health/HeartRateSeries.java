@@ -0,0 +1,63 @@
+package com.example.health;
+
+/**
+ * Time-ordered heart-rate samples held in parallel primitive arrays.
+ */
+public final class HeartRateSeries {
+
+    public static final HeartRateSeries EMPTY = new HeartRateSeries(new long[0], new float[0], 0);
+
+    private final long[] timestamps;
+    private final float[] values;
+    private final int size;
+
+    public HeartRateSeries(long[] timestamps, float[] values, int size) {
+        if (size > timestamps.length || size > values.length) {
+            throw new IllegalArgumentException("size exceeds array length");
+        }
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    public float valueAt(int index) {
+        return values[index];
+    }
+
+    public long firstTimestamp() {
+        return timestamps[0];
+    }
+
+    public long lastTimestamp() {
+        return timestamps[size - 1];
+    }
+
+    /**
+     * Index of the first sample at or after {@code timestampMillis}, or {@link #size()} if there is none.
+     */
+    public int indexAtOrAfter(long timestampMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestampMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.health;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates parsed samples into primitive arrays and produces a {@link HeartRateSeries}. Samples that
+ * fail to parse are counted and skipped.
+ */
+public final class HeartRateSeriesBuilder {
+
+    private long[] timestamps;
+    private float[] values;
+    private int size;
+    private int rejectedCount;
+
+    public HeartRateSeriesBuilder(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        timestamps = new long[capacity];
+        values = new float[capacity];
+    }
+
+    /**
+     * Parses and appends one sample. Returns {@code false} if either field was missing or invalid.
+     */
+    public boolean addRaw(Object timestampValue, Object bpmValue) {
+        Long timestamp = HeartRateSampleParser.parseTimestamp(timestampValue);
+        float bpm = HeartRateSampleParser.parseBpm(bpmValue);
+        if (timestamp == null || Float.isNaN(bpm)) {
+            rejectedCount++;
+            return false;
+        }
+        add(timestamp.longValue(), bpm);
+        return true;
+    }
+
+    public void add(long timestampMillis, float bpm) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestampMillis;
+        values[size] = bpm;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns the samples added so far. The series shares this builder's arrays, so stop adding afterwards.
+     */
+    public HeartRateSeries build() {
+        return size == 0 ? HeartRateSeries.EMPTY : new HeartRateSeries(timestamps, values, size);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.health;
+
+import java.util.Arrays;
+
+/**
+ * Applies single-sample inserts, updates and removals to a time-ordered series in place, so live
+ * changes cost a binary search and at most one array shift instead of a rebuild. Starts from a copy of
+ * a {@link HeartRateSeries}. {@link #view()} wraps the current arrays without copying, so a view is
+ * only valid until the next edit.
+ */
+public final class HeartRateSeriesEditor {
+
+    private long[] timestamps;
+    private float[] values;
+    private int size;
+
+    public HeartRateSeriesEditor(HeartRateSeries source) {
+        size = source.size();
+        int capacity = Math.max(16, size + size / 4);
+        timestamps = new long[capacity];
+        values = new float[capacity];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = source.timestampAt(i);
+            values[i] = source.valueAt(i);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Index of the sample at {@code timestampMillis}, or {@code -(insertionPoint + 1)} if there is none.
+     */
+    public int indexOf(long timestampMillis) {
+        return Arrays.binarySearch(timestamps, 0, size, timestampMillis);
+    }
+
+    public float valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * Inserts the sample or replaces the value at its timestamp. Returns {@code false} if the series
+     * already held exactly this sample.
+     */
+    public boolean put(long timestampMillis, float bpm) {
+        int index = indexOf(timestampMillis);
+        if (index >= 0) {
+            if (values[index] == bpm) return false;
+            values[index] = bpm;
+            return true;
+        }
+
+        int insertAt = -index - 1;
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        timestamps[insertAt] = timestampMillis;
+        values[insertAt] = bpm;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long timestampMillis) {
+        int index = indexOf(timestampMillis);
+        if (index < 0) return false;
+        System.arraycopy(timestamps, index + 1, timestamps, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public HeartRateSeries view() {
+        return size == 0 ? HeartRateSeries.EMPTY : new HeartRateSeries(timestamps, values, size);
+    }
+}
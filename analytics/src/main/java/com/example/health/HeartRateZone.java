@@ -0,0 +1,22 @@
+package com.example.health;
+
+/**
+ * Resting heart-rate bands used to colour live readings.
+ */
+public enum HeartRateZone {
+    LOW,
+    NORMAL,
+    HIGH;
+
+    public static final int LOW_THRESHOLD_BPM = 60;
+    public static final int HIGH_THRESHOLD_BPM = 100;
+
+    public static HeartRateZone classify(float bpm) {
+        if (bpm < LOW_THRESHOLD_BPM) {
+            return LOW;
+        } else if (bpm > HIGH_THRESHOLD_BPM) {
+            return HIGH;
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.health;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All samples of one patient within one time bucket, kept as parallel arrays of millisecond offsets
+ * from the bucket start and BPM values, sorted by offset. This is the in-memory form of a packed
+ * measurement document; {@link #unpack} reads the stored form back.
+ */
+public final class PackedSampleBucket {
+
+    private final long bucketStart;
+    private int[] offsets = new int[16];
+    private int[] values = new int[16];
+    private int size;
+
+    public PackedSampleBucket(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestampAt(int index) {
+        return bucketStart + offsets[index];
+    }
+
+    public int valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * Inserts a sample in offset order. A sample at an offset that is already present replaces it,
+     * so re-adding the same reading is idempotent.
+     */
+    public void add(long timestampMillis, int bpm) {
+        long offset = timestampMillis - bucketStart;
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("timestamp outside bucket");
+        }
+        int index = Arrays.binarySearch(offsets, 0, size, (int) offset);
+        if (index >= 0) {
+            values[index] = bpm;
+            return;
+        }
+        int insertAt = -index - 1;
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(offsets, insertAt, offsets, insertAt + 1, size - insertAt);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        offsets[insertAt] = (int) offset;
+        values[insertAt] = bpm;
+        size++;
+    }
+
+    /**
+     * Adds samples from a stored document without replacing samples already held in memory.
+     */
+    public void merge(List<?> storedOffsets, List<?> storedValues) {
+        int count = Math.min(storedOffsets.size(), storedValues.size());
+        for (int i = 0; i < count; i++) {
+            Object offset = storedOffsets.get(i);
+            Object value = storedValues.get(i);
+            if (!(offset instanceof Number) || !(value instanceof Number)) continue;
+            int existing = Arrays.binarySearch(offsets, 0, size, ((Number) offset).intValue());
+            if (existing < 0) {
+                add(bucketStart + ((Number) offset).intValue(), ((Number) value).intValue());
+            }
+        }
+    }
+
+    public List<Integer> offsetList() {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(offsets[i]);
+        }
+        return list;
+    }
+
+    public List<Integer> valueList() {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Appends the samples of a stored document to {@code out}. Firestore returns the array elements
+     * as Long; malformed entries are skipped. Returns the number of samples appended.
+     */
+    public static int unpack(long bucketStart, List<?> storedOffsets, List<?> storedValues, HeartRateSeriesBuilder out) {
+        if (storedOffsets == null || storedValues == null) return 0;
+        int count = Math.min(storedOffsets.size(), storedValues.size());
+        int appended = 0;
+        for (int i = 0; i < count; i++) {
+            Object offset = storedOffsets.get(i);
+            if (offset instanceof Number && out.addRaw(bucketStart + ((Number) offset).longValue(), storedValues.get(i))) {
+                appended++;
+            }
+        }
+        return appended;
+    }
+}
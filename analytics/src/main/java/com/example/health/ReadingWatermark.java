@@ -0,0 +1,59 @@
+package com.example.health;
+
+/**
+ * The span of a patient's readings that is replicated locally: the newest and oldest synced reading
+ * times, and whether paging has reached the oldest remote reading. Completeness needs a watermark; a
+ * sync that found no readings yet says nothing about readings written later, so it stays incomplete
+ * and the next sync pages from the newest reading again. Not thread-safe.
+ */
+public final class ReadingWatermark {
+
+    private long newest;
+    private long oldest;
+    private boolean complete;
+
+    public ReadingWatermark() {
+        this(Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    public ReadingWatermark(long newest, long oldest, boolean complete) {
+        this.newest = newest;
+        this.oldest = oldest;
+        // States saved before a watermark existed cannot be complete
+        this.complete = complete && hasSynced();
+    }
+
+    public boolean hasSynced() {
+        return newest != Long.MIN_VALUE;
+    }
+
+    /**
+     * Widens the synced span to include a contiguous run of readings from {@code fromMillis} to
+     * {@code toMillis}; callers must only pass runs adjacent to the current span.
+     */
+    public void include(long fromMillis, long toMillis) {
+        oldest = Math.min(oldest, fromMillis);
+        newest = Math.max(newest, toMillis);
+    }
+
+    /**
+     * Records that paging reached the oldest remote reading. Ignored until a reading has been synced.
+     */
+    public void markComplete() {
+        if (hasSynced()) {
+            complete = true;
+        }
+    }
+
+    public long getNewest() {
+        return newest;
+    }
+
+    public long getOldest() {
+        return oldest;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.health;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with "equal jitter": the n-th retry waits between half and all of
+ * {@code min(maxDelay, baseDelay * 2^n)}, so clients that failed together do not retry in lockstep
+ * while every wait still grows. Not thread-safe.
+ */
+public final class RetryBackoff {
+
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+    private int attempt;
+
+    public RetryBackoff(long baseDelayMs, long maxDelayMs) {
+        this(baseDelayMs, maxDelayMs, new Random());
+    }
+
+    public RetryBackoff(long baseDelayMs, long maxDelayMs, Random random) {
+        if (baseDelayMs <= 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Need 0 < baseDelayMs <= maxDelayMs");
+        }
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.random = random;
+    }
+
+    /**
+     * Returns the delay before the next retry and advances the attempt count.
+     */
+    public long nextDelayMs() {
+        // Cap the shift so the ceiling cannot overflow before it is clamped
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        attempt++;
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half + 1));
+    }
+
+    public void reset() {
+        attempt = 0;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.health;
+
+/**
+ * Running min/max/sum/count for one rollup bucket. Tracks how much of the sum and count has already
+ * been written so that writers can send increments instead of absolute values. Min and max are
+ * absolute, so while the extremes of a persisted copy are still being read they must not be written.
+ */
+public final class RollupAccumulator {
+
+    private final RollupResolution resolution;
+    private long bucketStart = Long.MIN_VALUE;
+    private float min;
+    private float max;
+    private double sum;
+    private long count;
+    private double writtenSum;
+    private long writtenCount;
+    private boolean extremesPending;
+
+    public RollupAccumulator(RollupResolution resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Returns {@code true} if {@code timestampMillis} falls outside the current bucket, i.e. the
+     * caller should flush this accumulator and {@link #reset} it before adding the sample.
+     */
+    public boolean isOutsideBucket(long timestampMillis) {
+        return count > 0 && resolution.bucketStart(timestampMillis) != bucketStart;
+    }
+
+    public void reset(long timestampMillis) {
+        bucketStart = resolution.bucketStart(timestampMillis);
+        min = Float.MAX_VALUE;
+        max = -Float.MAX_VALUE;
+        sum = 0;
+        count = 0;
+        writtenSum = 0;
+        writtenCount = 0;
+        extremesPending = false;
+    }
+
+    public void add(long timestampMillis, float bpm) {
+        if (count == 0) {
+            reset(timestampMillis);
+        }
+        min = Math.min(min, bpm);
+        max = Math.max(max, bpm);
+        sum += bpm;
+        count++;
+    }
+
+    /**
+     * Marks the extremes as incomplete until a persisted copy of this bucket has been read.
+     */
+    public void awaitPersistedExtremes() {
+        extremesPending = true;
+    }
+
+    /**
+     * Folds in the extremes of a previously persisted copy of this bucket.
+     */
+    public void mergeExtremes(float persistedMin, float persistedMax) {
+        min = Math.min(min, persistedMin);
+        max = Math.max(max, persistedMax);
+        extremesPending = false;
+    }
+
+    /**
+     * The bucket has no persisted extremes, so the running ones are complete.
+     */
+    public void markExtremesComplete() {
+        extremesPending = false;
+    }
+
+    public boolean hasPendingExtremes() {
+        return extremesPending;
+    }
+
+    public void markWritten() {
+        writtenSum = sum;
+        writtenCount = count;
+    }
+
+    public boolean hasUnwrittenSamples() {
+        return count > writtenCount;
+    }
+
+    public boolean hasWrittenSamples() {
+        return writtenCount > 0;
+    }
+
+    public RollupResolution getResolution() {
+        return resolution;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public double getUnwrittenSum() {
+        return sum - writtenSum;
+    }
+
+    public long getUnwrittenCount() {
+        return count - writtenCount;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.health;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The open minute, hour and day rollup buckets of one patient, plus closed buckets whose persisted
+ * extremes were still being read when the next bucket opened. A closed bucket is kept, not reset,
+ * until {@link #onExtremesRead} so its merged min/max can still be written. Not thread-safe.
+ */
+public final class RollupBucketSet {
+
+    private final RollupAccumulator[] open;
+    private final List<RollupAccumulator> closedPending = new ArrayList<>();
+
+    public RollupBucketSet() {
+        RollupResolution[] resolutions = RollupResolution.values();
+        open = new RollupAccumulator[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            open[i] = new RollupAccumulator(resolutions[i]);
+        }
+    }
+
+    /**
+     * Whether {@code timestampMillis} closes the open minute bucket. Every hour and day boundary is also
+     * a minute boundary, so pending sums should be written before such a sample is added.
+     */
+    public boolean closesMinute(long timestampMillis) {
+        return open[0].isOutsideBucket(timestampMillis);
+    }
+
+    /**
+     * Adds a sample to every resolution and returns the hour and day buckets it opened; their
+     * persisted extremes are pending until {@link #onExtremesRead} is called for them.
+     */
+    public List<RollupAccumulator> add(long timestampMillis, float bpm) {
+        List<RollupAccumulator> opened = new ArrayList<>(2);
+        for (int i = 0; i < open.length; i++) {
+            RollupAccumulator accumulator = open[i];
+            boolean opensBucket = accumulator.getCount() == 0 || accumulator.isOutsideBucket(timestampMillis);
+            if (opensBucket) {
+                if (accumulator.getCount() > 0 && accumulator.hasPendingExtremes()) {
+                    closedPending.add(accumulator);
+                    accumulator = new RollupAccumulator(accumulator.getResolution());
+                    open[i] = accumulator;
+                }
+                accumulator.reset(timestampMillis);
+            }
+            accumulator.add(timestampMillis, bpm);
+            if (opensBucket && accumulator.getResolution() != RollupResolution.MINUTE) {
+                accumulator.awaitPersistedExtremes();
+                opened.add(accumulator);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * The open buckets followed by closed buckets still waiting for their persisted extremes.
+     */
+    public List<RollupAccumulator> all() {
+        List<RollupAccumulator> all = new ArrayList<>(open.length + closedPending.size());
+        for (RollupAccumulator accumulator : open) {
+            all.add(accumulator);
+        }
+        all.addAll(closedPending);
+        return all;
+    }
+
+    public int getClosedPendingCount() {
+        return closedPending.size();
+    }
+
+    /**
+     * Folds in the extremes read for {@code accumulator}'s bucket, {@code null} if none were stored.
+     * Returns true if its samples were already written, so the merged extremes must be written now.
+     */
+    public boolean onExtremesRead(RollupAccumulator accumulator, Double persistedMin, Double persistedMax) {
+        if (!accumulator.hasPendingExtremes()) return false;
+        if (persistedMin != null && persistedMax != null) {
+            accumulator.mergeExtremes(persistedMin.floatValue(), persistedMax.floatValue());
+        } else {
+            accumulator.markExtremesComplete();
+        }
+        closedPending.remove(accumulator);
+        return accumulator.hasWrittenSamples();
+    }
+}
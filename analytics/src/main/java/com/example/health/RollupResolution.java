@@ -0,0 +1,49 @@
+package com.example.health;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket widths for pre-aggregated heart-rate rollups, finest first.
+ */
+public enum RollupResolution {
+    MINUTE("minute", TimeUnit.MINUTES.toMillis(1)),
+    HOUR("hour", TimeUnit.HOURS.toMillis(1)),
+    DAY("day", TimeUnit.DAYS.toMillis(1));
+
+    private final String id;
+    private final long bucketMillis;
+
+    RollupResolution(String id, long bucketMillis) {
+        this.id = id;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * Start of the UTC-aligned bucket containing {@code timestampMillis}.
+     */
+    public long bucketStart(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, bucketMillis) * bucketMillis;
+    }
+
+    /**
+     * Coarsest resolution that still yields at least {@code targetPoints} buckets over {@code spanMillis},
+     * or {@code null} when even minute buckets would be too sparse and raw samples should be used.
+     */
+    public static RollupResolution pick(long spanMillis, int targetPoints) {
+        RollupResolution[] resolutions = values();
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            if (spanMillis / resolutions[i].bucketMillis >= targetPoints) {
+                return resolutions[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.health;
+
+import java.util.Objects;
+
+/**
+ * Decides whether a wear device snapshot carries a heart-rate sample that has not been seen yet.
+ * Snapshots with local pending writes are echoes of our own command/status updates. Otherwise the
+ * device-provided sequence number is compared, then the device sample timestamp. Older watch builds
+ * send neither marker; for them a snapshot is a new sample when the heart rate changed, or when it
+ * repeats and none of the other document fields did. A snapshot that only changed other fields, such
+ * as a status, an ack or the server copy of our own write, is not a sample.
+ */
+public final class SampleChangeDetector {
+
+    private Long lastSequence;
+    private Long lastSampleTimestamp;
+    private Long lastHeartRate;
+    private Object lastOtherFields;
+
+    private long acceptedCount;
+    private long pendingWriteCount;
+    private long duplicateCount;
+
+    /**
+     * @param otherFields the document fields other than the sample itself, compared with
+     *                    {@link Object#equals}; only consulted when neither marker is present
+     */
+    public boolean isNewSample(boolean hasPendingWrites, Long sequence, Long sampleTimestamp, Long heartRate,
+                               Object otherFields) {
+        if (heartRate == null) {
+            return false;
+        }
+        if (hasPendingWrites) {
+            pendingWriteCount++;
+            return false;
+        }
+        boolean otherFieldsChanged = lastOtherFields != null && !Objects.equals(otherFields, lastOtherFields);
+        lastOtherFields = otherFields;
+
+        boolean isNew;
+        if (sequence != null) {
+            isNew = !sequence.equals(lastSequence);
+        } else if (sampleTimestamp != null) {
+            isNew = !sampleTimestamp.equals(lastSampleTimestamp);
+        } else {
+            isNew = !heartRate.equals(lastHeartRate) || !otherFieldsChanged;
+        }
+
+        if (!isNew) {
+            duplicateCount++;
+            return false;
+        }
+        lastSequence = sequence;
+        lastSampleTimestamp = sampleTimestamp;
+        lastHeartRate = heartRate;
+        acceptedCount++;
+        return true;
+    }
+
+    public void reset() {
+        lastSequence = null;
+        lastSampleTimestamp = null;
+        lastHeartRate = null;
+        lastOtherFields = null;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public long getPendingWriteCount() {
+        return pendingWriteCount;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public long getSuppressedCount() {
+        return pendingWriteCount + duplicateCount;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.health;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Loaded time ranges of a series, kept as disjoint segments of primitive arrays. A segment records
+ * the interval that was fully loaded, not just its sample span, so an empty range is still a hit.
+ * Overlapping or touching ranges are merged into one segment on {@link #put}, with the newer samples
+ * replacing the older ones inside the new range. When the total sample count exceeds the limit, the
+ * least recently used segments are dropped. Not thread-safe.
+ */
+public final class SeriesRangeCache {
+
+    private static final class Segment {
+        long from;
+        long to;
+        long[] timestamps;
+        float[] values;
+        int size;
+        long lastUsed;
+    }
+
+    private final int maxSamples;
+    // Segment start to segment; segments never overlap or touch
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private int sampleCount;
+    private long useClock;
+
+    public SeriesRangeCache(int maxSamples) {
+        if (maxSamples <= 0) {
+            throw new IllegalArgumentException("maxSamples must be positive");
+        }
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Records that {@code [fromMillis, toMillis)} is loaded and holds exactly the samples of
+     * {@code series} that fall inside it.
+     */
+    public void put(long fromMillis, long toMillis, HeartRateSeries series) {
+        if (fromMillis >= toMillis) return;
+
+        // Collect every segment overlapping or touching the new range
+        List<Segment> merged = new ArrayList<>();
+        Map.Entry<Long, Segment> floor = segments.floorEntry(fromMillis);
+        Long key = floor != null && floor.getValue().to >= fromMillis ? floor.getKey() : segments.ceilingKey(fromMillis);
+        while (key != null && key <= toMillis) {
+            Segment segment = segments.remove(key);
+            sampleCount -= segment.size;
+            merged.add(segment);
+            key = segments.higherKey(key);
+        }
+
+        int inside = 0;
+        for (int i = 0; i < series.size(); i++) {
+            long t = series.timestampAt(i);
+            if (t >= fromMillis && t < toMillis) inside++;
+        }
+        int capacity = inside;
+        for (Segment segment : merged) {
+            capacity += segment.size;
+        }
+
+        Segment result = new Segment();
+        result.from = fromMillis;
+        result.to = toMillis;
+        result.timestamps = new long[capacity];
+        result.values = new float[capacity];
+        // Older samples before the new range, then the new samples, then older samples after it
+        for (Segment segment : merged) {
+            result.from = Math.min(result.from, segment.from);
+            for (int i = 0; i < segment.size && segment.timestamps[i] < fromMillis; i++) {
+                append(result, segment.timestamps[i], segment.values[i]);
+            }
+        }
+        for (int i = 0; i < series.size(); i++) {
+            long t = series.timestampAt(i);
+            if (t >= fromMillis && t < toMillis) append(result, t, series.valueAt(i));
+        }
+        for (Segment segment : merged) {
+            result.to = Math.max(result.to, segment.to);
+            for (int i = 0; i < segment.size; i++) {
+                if (segment.timestamps[i] >= toMillis) append(result, segment.timestamps[i], segment.values[i]);
+            }
+        }
+
+        if (result.size > maxSamples) {
+            // Keep the newest samples; the segment then only vouches for the span they cover
+            int drop = result.size - maxSamples;
+            result.from = result.timestamps[drop];
+            System.arraycopy(result.timestamps, drop, result.timestamps, 0, maxSamples);
+            System.arraycopy(result.values, drop, result.values, 0, maxSamples);
+            result.size = maxSamples;
+        }
+        result.lastUsed = ++useClock;
+        segments.put(result.from, result);
+        sampleCount += result.size;
+        evict(result);
+    }
+
+    /**
+     * Sets the sample at {@code timestampMillis} if it falls inside a loaded range, keeping that range
+     * complete. Returns false, caching nothing, when the time is not covered by any segment.
+     */
+    public boolean update(long timestampMillis, float value) {
+        Segment segment = segmentContaining(timestampMillis);
+        if (segment == null) return false;
+        int index = indexAtOrAfter(segment, timestampMillis);
+        if (index < segment.size && segment.timestamps[index] == timestampMillis) {
+            segment.values[index] = value;
+            return true;
+        }
+        if (segment.size == segment.timestamps.length) {
+            int capacity = Math.max(4, segment.size + (segment.size >> 1));
+            segment.timestamps = Arrays.copyOf(segment.timestamps, capacity);
+            segment.values = Arrays.copyOf(segment.values, capacity);
+        }
+        System.arraycopy(segment.timestamps, index, segment.timestamps, index + 1, segment.size - index);
+        System.arraycopy(segment.values, index, segment.values, index + 1, segment.size - index);
+        segment.timestamps[index] = timestampMillis;
+        segment.values[index] = value;
+        segment.size++;
+        sampleCount++;
+        evict(segment);
+        return true;
+    }
+
+    /**
+     * Drops the sample at {@code timestampMillis} from the loaded range that covers it. Returns false
+     * when the time is not covered by any segment.
+     */
+    public boolean remove(long timestampMillis) {
+        Segment segment = segmentContaining(timestampMillis);
+        if (segment == null) return false;
+        int index = indexAtOrAfter(segment, timestampMillis);
+        if (index < segment.size && segment.timestamps[index] == timestampMillis) {
+            System.arraycopy(segment.timestamps, index + 1, segment.timestamps, index, segment.size - index - 1);
+            System.arraycopy(segment.values, index + 1, segment.values, index, segment.size - index - 1);
+            segment.size--;
+            sampleCount--;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the samples in {@code [fromMillis, toMillis)} if that whole range is loaded, otherwise
+     * {@code null}.
+     */
+    public HeartRateSeries get(long fromMillis, long toMillis) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(fromMillis);
+        if (floor == null || floor.getValue().to < toMillis) return null;
+
+        Segment segment = floor.getValue();
+        segment.lastUsed = ++useClock;
+        int start = indexAtOrAfter(segment, fromMillis);
+        int end = indexAtOrAfter(segment, toMillis);
+        if (start == end) return HeartRateSeries.EMPTY;
+        long[] timestamps = new long[end - start];
+        float[] values = new float[end - start];
+        System.arraycopy(segment.timestamps, start, timestamps, 0, timestamps.length);
+        System.arraycopy(segment.values, start, values, 0, values.length);
+        return new HeartRateSeries(timestamps, values, timestamps.length);
+    }
+
+    /**
+     * Sub-ranges of {@code [fromMillis, toMillis)} that are not loaded, oldest first, as
+     * {@code {from, to}} pairs.
+     */
+    public List<long[]> missing(long fromMillis, long toMillis) {
+        List<long[]> gaps = new ArrayList<>();
+        long cursor = fromMillis;
+        Map.Entry<Long, Segment> floor = segments.floorEntry(fromMillis);
+        Iterator<Segment> it = segments.tailMap(floor != null ? floor.getKey() : fromMillis, true).values().iterator();
+        while (cursor < toMillis && it.hasNext()) {
+            Segment segment = it.next();
+            if (segment.from >= toMillis) break;
+            if (segment.from > cursor) {
+                gaps.add(new long[]{cursor, segment.from});
+            }
+            cursor = Math.max(cursor, segment.to);
+        }
+        if (cursor < toMillis) {
+            gaps.add(new long[]{cursor, toMillis});
+        }
+        return gaps;
+    }
+
+    public void clear() {
+        segments.clear();
+        sampleCount = 0;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void evict(Segment keep) {
+        while (sampleCount > maxSamples) {
+            Segment oldest = null;
+            for (Segment segment : segments.values()) {
+                if (segment != keep && (oldest == null || segment.lastUsed < oldest.lastUsed)) {
+                    oldest = segment;
+                }
+            }
+            if (oldest == null) return;
+            segments.remove(oldest.from);
+            sampleCount -= oldest.size;
+        }
+    }
+
+    private Segment segmentContaining(long timestampMillis) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(timestampMillis);
+        return floor != null && timestampMillis < floor.getValue().to ? floor.getValue() : null;
+    }
+
+    private static void append(Segment segment, long timestamp, float value) {
+        segment.timestamps[segment.size] = timestamp;
+        segment.values[segment.size] = value;
+        segment.size++;
+    }
+
+    private static int indexAtOrAfter(Segment segment, long timestampMillis) {
+        int low = 0;
+        int high = segment.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segment.timestamps[mid] < timestampMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
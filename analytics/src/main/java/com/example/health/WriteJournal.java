@@ -0,0 +1,237 @@
+package com.example.health;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only journal of pending writes keyed by destination (e.g. a document path).
+ *
+ * <p>Each {@link #put} or {@link #remove} appends one checksummed record and forces it to disk, so
+ * the pending set survives process death. Only the latest payload per key is pending: a newer put
+ * supersedes an older one. Opening replays the log in order; a torn or corrupt tail from a crash
+ * mid-append is truncated. The log is rewritten once it is mostly dead records and truncated
+ * whenever the pending set becomes empty. All methods are synchronized.
+ */
+public final class WriteJournal implements Closeable {
+
+    public static final class Entry {
+        private final String key;
+        private final String payload;
+
+        Entry(String key, String payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    // type + key length + payload length + CRC
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4 + 8;
+    private static final int COMPACT_MIN_DEAD_RECORDS = 64;
+
+    private final File file;
+    private FileChannel channel;
+    private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+    private long size;
+    private int deadRecords;
+
+    public static WriteJournal open(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return new WriteJournal(file);
+    }
+
+    private WriteJournal(File file) throws IOException {
+        this.file = file;
+        channel = openChannel(file);
+        replay();
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void replay() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Keep reading until the whole log is in memory
+        }
+        buffer.flip();
+
+        long valid = 0;
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            byte type = buffer.get();
+            int keyLength = buffer.getInt();
+            int payloadLength = buffer.getInt();
+            if (keyLength < 0 || payloadLength < 0 || (long) keyLength + payloadLength + 8 > buffer.remaining()) break;
+            byte[] key = new byte[keyLength];
+            byte[] payload = new byte[payloadLength];
+            buffer.get(key).get(payload);
+            long crc = buffer.getLong();
+            if (crc != checksum(buffer.array(), start, RECORD_OVERHEAD - 8 + keyLength + payloadLength)) break;
+
+            String keyString = new String(key, StandardCharsets.UTF_8);
+            if (type == TYPE_PUT) {
+                if (pending.remove(keyString) != null) deadRecords++;
+                pending.put(keyString, new String(payload, StandardCharsets.UTF_8));
+            } else if (type == TYPE_REMOVE) {
+                pending.remove(keyString);
+                deadRecords += 2;
+            } else {
+                break;
+            }
+            valid = buffer.position();
+        }
+
+        if (valid < fileSize) {
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        size = valid;
+    }
+
+    /**
+     * Records {@code payload} as the pending write for {@code key}, replacing any older one.
+     */
+    public synchronized void put(String key, String payload) throws IOException {
+        append(TYPE_PUT, key, payload);
+        if (pending.remove(key) != null) deadRecords++;
+        pending.put(key, payload);
+        compactIfNeeded();
+    }
+
+    /**
+     * Marks the write for {@code key} as done. Returns {@code false} if nothing was pending.
+     */
+    public synchronized boolean remove(String key) throws IOException {
+        if (!pending.containsKey(key)) return false;
+        pending.remove(key);
+        if (pending.isEmpty()) {
+            truncate();
+        } else {
+            append(TYPE_REMOVE, key, "");
+            deadRecords += 2;
+            compactIfNeeded();
+        }
+        return true;
+    }
+
+    /**
+     * Removes {@code key} only if its pending payload is still {@code payload}, so a write that was
+     * superseded while its older copy was in flight stays queued.
+     */
+    public synchronized boolean removeIfUnchanged(String key, String payload) throws IOException {
+        return payload.equals(pending.get(key)) && remove(key);
+    }
+
+    /**
+     * Returns up to {@code limit} pending writes, oldest first.
+     */
+    public synchronized List<Entry> peek(int limit) {
+        List<Entry> entries = new ArrayList<>(Math.min(limit, pending.size()));
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            if (entries.size() == limit) break;
+            entries.add(new Entry(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    public synchronized boolean contains(String key) {
+        return pending.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public synchronized long getFileBytes() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte type, String key, String payload) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = encode(type, keyBytes, payloadBytes);
+        while (record.hasRemaining()) {
+            channel.write(record, size + record.position());
+        }
+        channel.force(false);
+        size += record.limit();
+    }
+
+    private static ByteBuffer encode(byte type, byte[] key, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + key.length + payload.length);
+        record.put(type).putInt(key.length).putInt(payload.length).put(key).put(payload);
+        record.putLong(checksum(record.array(), 0, record.position()));
+        record.flip();
+        return record;
+    }
+
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    private void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+        size = 0;
+        deadRecords = 0;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (deadRecords < COMPACT_MIN_DEAD_RECORDS || deadRecords < pending.size()) return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            ByteBuffer record = encode(TYPE_PUT, entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    entry.getValue().getBytes(StandardCharsets.UTF_8));
+            bytes.write(record.array(), 0, record.limit());
+        }
+
+        // Write the live records to a side file and swap it in, so a crash leaves one complete log
+        File compacted = new File(file.getPath() + ".compact");
+        Files.write(compacted.toPath(), bytes.toByteArray());
+        try (FileChannel compactedChannel = FileChannel.open(compacted.toPath(), StandardOpenOption.WRITE)) {
+            compactedChannel.force(true);
+        }
+        channel.close();
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = openChannel(file);
+        size = channel.size();
+        deadRecords = 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AnomalyDetectorTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final List<AnomalyEvent> events = new ArrayList<>();
+    private final AnomalyDetector detector = new AnomalyDetector(events::add);
+
+    private long feed(long from, int seconds, float bpm) {
+        long timestamp = from;
+        for (int i = 0; i < seconds; i++) {
+            detector.onSample(timestamp, bpm);
+            timestamp += 1_000L;
+        }
+        return timestamp;
+    }
+
+    @Test
+    public void steadyNormalRateEmitsNothing() {
+        feed(START, 600, 72f);
+
+        assertTrue(events.isEmpty());
+        assertEquals(72f, detector.getBaselineBpm(), 0.01f);
+        assertEquals(72f, detector.getSessionMean(), 0.01f);
+    }
+
+    @Test
+    public void sustainedHighRateRaisesAndResolvesTachycardia() {
+        long t = feed(START, 60, 75f);
+        t = feed(t, 30, 130f);
+        // A short burst is not sustained
+        assertEquals(0, count(AnomalyEvent.Type.TACHYCARDIA));
+
+        t = feed(t, 90, 130f);
+        assertEquals(1, count(AnomalyEvent.Type.TACHYCARDIA));
+        assertTrue(detector.isTachycardia());
+
+        feed(t, 120, 75f);
+        assertEquals(AnomalyEvent.Phase.RESOLVED, last(AnomalyEvent.Type.TACHYCARDIA).getPhase());
+    }
+
+    @Test
+    public void sustainedLowRateRaisesBradycardia() {
+        feed(START, 200, 45f);
+
+        assertEquals(1, count(AnomalyEvent.Type.BRADYCARDIA));
+        assertTrue(detector.isBradycardia());
+    }
+
+    @Test
+    public void suddenJumpIsReportedOncePerRefractoryPeriod() {
+        long t = feed(START, 120, 70f);
+        t = feed(t, 5, 115f);
+
+        assertEquals(1, count(AnomalyEvent.Type.SUDDEN_JUMP));
+        assertEquals(115f, last(AnomalyEvent.Type.SUDDEN_JUMP).getBpm(), 0f);
+        assertEquals(70f, last(AnomalyEvent.Type.SUDDEN_JUMP).getBaselineBpm(), 0.5f);
+    }
+
+    @Test
+    public void dropoutIsRaisedByTickAndResolvedBySample() {
+        long t = feed(START, 10, 70f);
+
+        detector.onTick(t + AnomalyDetector.DROPOUT_MS);
+        assertTrue(detector.isDropout());
+        assertEquals(AnomalyEvent.Phase.ONSET, last(AnomalyEvent.Type.SIGNAL_DROPOUT).getPhase());
+
+        detector.onSample(t + AnomalyDetector.DROPOUT_MS + 5_000L, 70f);
+        assertEquals(AnomalyEvent.Phase.RESOLVED, last(AnomalyEvent.Type.SIGNAL_DROPOUT).getPhase());
+        assertEquals(2, count(AnomalyEvent.Type.SIGNAL_DROPOUT));
+    }
+
+    @Test
+    public void gapSeenOnlyBySampleStillReportsDropout() {
+        long t = feed(START, 10, 70f);
+
+        detector.onSample(t + 60_000L, 70f);
+
+        assertEquals(2, count(AnomalyEvent.Type.SIGNAL_DROPOUT));
+    }
+
+    private int count(AnomalyEvent.Type type) {
+        int count = 0;
+        for (AnomalyEvent event : events) {
+            if (event.getType() == type) count++;
+        }
+        return count;
+    }
+
+    private AnomalyEvent last(AnomalyEvent.Type type) {
+        AnomalyEvent last = null;
+        for (AnomalyEvent event : events) {
+            if (event.getType() == type) last = event;
+        }
+        return last;
+    }
+}
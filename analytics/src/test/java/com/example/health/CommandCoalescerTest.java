@@ -0,0 +1,95 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CommandCoalescerTest {
+
+    @Test
+    public void sendsOnlyTheLatestIntent() {
+        CommandCoalescer commands = new CommandCoalescer(0);
+        commands.request("start");
+        commands.request("stop");
+        commands.request("start");
+
+        assertEquals(1, commands.next(100));
+        assertEquals("start", commands.getLastSent());
+        assertEquals(2, commands.getCoalescedCount());
+        assertEquals(-1, commands.next(110));
+    }
+
+    @Test
+    public void holdsRequestsWhileAWriteIsInFlight() {
+        CommandCoalescer commands = new CommandCoalescer(0);
+        commands.request("start");
+        long first = commands.next(100);
+
+        commands.request("stop");
+        assertEquals(-1, commands.next(110));
+        commands.request("start");
+        commands.onWriteFinished(first, true);
+
+        // Toggled back to what was already sent
+        assertFalse(commands.hasPending());
+        assertEquals(-1, commands.next(120));
+
+        commands.request("stop");
+        assertEquals(2, commands.next(130));
+    }
+
+    @Test
+    public void resendsAfterAnUndeliveredWrite() {
+        CommandCoalescer commands = new CommandCoalescer(0);
+        commands.request("start");
+        long id = commands.next(100);
+        commands.onWriteFinished(id, false);
+
+        assertFalse(commands.hasPending());
+        commands.request("start");
+        assertTrue(commands.hasPending());
+        assertEquals(2, commands.next(200));
+        assertEquals(1, commands.getUnackedCount());
+    }
+
+    @Test
+    public void idsStayAheadOfObservedCommands() {
+        CommandCoalescer commands = new CommandCoalescer(5);
+        commands.observe(41, "stop");
+        commands.observe(12, "start");
+
+        commands.request("stop");
+        assertFalse(commands.hasPending());
+        commands.request("start");
+        assertEquals(42, commands.next(100));
+        assertEquals(42, commands.getLastId());
+    }
+
+    @Test
+    public void acksGiveRoundTripsAndClearOlderCommands() {
+        CommandCoalescer commands = new CommandCoalescer(0);
+        commands.request("start");
+        long first = commands.next(100);
+        commands.onWriteFinished(first, true);
+        commands.request("stop");
+        long second = commands.next(150);
+        commands.onWriteFinished(second, true);
+
+        assertEquals(250, commands.onAck(second, 400));
+        assertEquals(0, commands.getUnackedCount());
+        assertEquals(-1, commands.onAck(first, 500));
+    }
+
+    @Test
+    public void boundsUnacknowledgedCommands() {
+        CommandCoalescer commands = new CommandCoalescer(0);
+        for (int i = 0; i < CommandCoalescer.MAX_UNACKED + 4; i++) {
+            commands.request(i % 2 == 0 ? "start" : "stop");
+            commands.onWriteFinished(commands.next(i), true);
+        }
+
+        assertEquals(CommandCoalescer.MAX_UNACKED, commands.getUnackedCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DownsamplerTest {
+
+    private static HeartRateSeries series(float... values) {
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = 1_000L * i;
+        }
+        return new HeartRateSeries(timestamps, values, values.length);
+    }
+
+    private static HeartRateSeries sine(int size) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = 80f + 20f * (float) Math.sin(i / 50.0);
+        }
+        return series(values);
+    }
+
+    @Test
+    public void keepsEverySampleWhenUnderThreshold() {
+        HeartRateSeries series = series(70, 72, 75, 71);
+        int[] out = new int[10];
+
+        int count = Downsampler.lttb(series, 0, series.size(), 10, out);
+
+        assertEquals(4, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, out[i]);
+        }
+    }
+
+    @Test
+    public void reducesToThresholdAndKeepsEndpoints() {
+        HeartRateSeries series = sine(10_000);
+        int[] out = new int[500];
+
+        int count = Downsampler.lttb(series, 0, series.size(), 500, out);
+
+        assertEquals(500, count);
+        assertEquals(0, out[0]);
+        assertEquals(series.size() - 1, out[count - 1]);
+    }
+
+    @Test
+    public void indicesAreStrictlyIncreasing() {
+        HeartRateSeries series = sine(5_000);
+        int[] out = new int[300];
+
+        int count = Downsampler.lttb(series, 0, series.size(), 300, out);
+
+        for (int i = 1; i < count; i++) {
+            assertTrue(out[i] > out[i - 1]);
+        }
+    }
+
+    @Test
+    public void preservesIsolatedPeakAndTrough() {
+        float[] values = new float[2_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 75f;
+        }
+        values[700] = 150f;
+        values[1_400] = 40f;
+        HeartRateSeries series = series(values);
+        int[] out = new int[100];
+
+        int count = Downsampler.lttb(series, 0, series.size(), 100, out);
+
+        boolean hasPeak = false;
+        boolean hasTrough = false;
+        for (int i = 0; i < count; i++) {
+            hasPeak |= out[i] == 700;
+            hasTrough |= out[i] == 1_400;
+        }
+        assertTrue(hasPeak);
+        assertTrue(hasTrough);
+    }
+
+    @Test
+    public void respectsSubRange() {
+        HeartRateSeries series = sine(10_000);
+        int[] out = new int[200];
+
+        int count = Downsampler.lttb(series, 2_000, 4_000, 200, out);
+
+        assertEquals(200, count);
+        assertEquals(2_000, out[0]);
+        assertEquals(3_999, out[count - 1]);
+        for (int i = 0; i < count; i++) {
+            assertTrue(out[i] >= 2_000 && out[i] < 4_000);
+        }
+    }
+
+    @Test
+    public void handlesEmptyAndTinyThresholds() {
+        HeartRateSeries series = sine(100);
+        int[] out = new int[2];
+
+        assertEquals(0, Downsampler.lttb(series, 10, 10, 50, out));
+        assertEquals(2, Downsampler.lttb(series, 0, 100, 2, out));
+        assertEquals(0, out[0]);
+        assertEquals(99, out[1]);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HeartRateArchiveTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void fill(HeartRateArchive archive, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            // Mostly 1 s apart with some jitter, as a real stream would be
+            assertTrue(archive.append(START + i * 1_000L + (i % 3) * 7, 60f + (i % 50) + 0.5f));
+        }
+    }
+
+    @Test
+    public void roundTripsAcrossBlocksAndPendingSamples() throws Exception {
+        int count = HeartRateArchive.BLOCK_SIZE * 2 + 100;
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            fill(archive, count);
+
+            HeartRateSeries series = archive.loadRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertEquals(2, archive.getBlockCount());
+            assertEquals(count, series.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(START + i * 1_000L + (i % 3) * 7, series.timestampAt(i));
+                assertEquals(60f + (i % 50) + 0.5f, series.valueAt(i), 0.001f);
+            }
+        }
+    }
+
+    @Test
+    public void scansOnlyTheRequestedRange() throws Exception {
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            fill(archive, HeartRateArchive.BLOCK_SIZE * 3);
+
+            long from = START + 1_500 * 1_000L;
+            long to = START + 2_500 * 1_000L;
+            HeartRateSeries series = archive.loadRange(from, to);
+
+            assertEquals(1_000, series.size());
+            assertTrue(series.firstTimestamp() >= from);
+            assertTrue(series.lastTimestamp() < to);
+        }
+    }
+
+    @Test
+    public void persistsAcrossReopen() throws Exception {
+        int count = HeartRateArchive.BLOCK_SIZE + 10;
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            fill(archive, count);
+        }
+
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            assertEquals(count, archive.size());
+            assertFalse(archive.append(START, 70f));
+            assertTrue(archive.append(archive.getLastTimestamp() + 1_000, 70f));
+            assertEquals(count + 1, archive.loadRange(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void dropsTornTailOnOpen() throws Exception {
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            fill(archive, HeartRateArchive.BLOCK_SIZE * 2);
+        }
+        // Simulate a crash after the second block's data but before its complete index record
+        try (RandomAccessFile index = new RandomAccessFile(new File(folder.getRoot(), "patient.hri"), "rw")) {
+            index.setLength(index.length() - 5);
+        }
+
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            assertEquals(HeartRateArchive.BLOCK_SIZE, archive.size());
+            assertEquals(HeartRateArchive.BLOCK_SIZE, archive.loadRange(Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void compressesRegularStreams() throws Exception {
+        try (HeartRateArchive archive = HeartRateArchive.open(folder.getRoot(), "patient")) {
+            for (int i = 0; i < HeartRateArchive.BLOCK_SIZE * 4; i++) {
+                archive.append(START + i * 1_000L, 70f + (i % 5));
+            }
+            archive.flush();
+
+            assertTrue(archive.getDataBytes() < archive.size() * 3);
+        }
+    }
+
+    @Test
+    public void zigzagRoundTrips() {
+        long[] values = {0, 1, -1, 63, -64, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            assertEquals(value, HeartRateArchive.unzigzag(HeartRateArchive.zigzag(value)));
+        }
+    }
+}
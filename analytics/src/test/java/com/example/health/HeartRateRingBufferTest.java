@@ -0,0 +1,58 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HeartRateRingBufferTest {
+
+    @Test
+    public void overwritesTheOldestSampleOnceFull() {
+        HeartRateRingBuffer buffer = new HeartRateRingBuffer(3, 60_000L);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i * 1_000L, 60f + i);
+        }
+
+        assertEquals(3, buffer.size());
+        assertEquals(3_000L, buffer.timestampAt(0));
+        assertEquals(63f, buffer.valueAt(0), 0f);
+        assertEquals(5_000L, buffer.timestampAt(2));
+        assertEquals(5_000L, buffer.latestTimestamp());
+    }
+
+    @Test
+    public void evictsSamplesOlderThanTheWindow() {
+        HeartRateRingBuffer buffer = new HeartRateRingBuffer(10, 5_000L);
+        buffer.add(1_000L, 70f);
+        buffer.add(2_000L, 71f);
+        buffer.add(6_000L, 72f);
+        assertEquals(3, buffer.size());
+
+        buffer.add(6_500L, 73f);
+        assertEquals(3, buffer.size());
+        assertEquals(2_000L, buffer.timestampAt(0));
+
+        // A long gap keeps only the newest sample
+        buffer.add(60_000L, 74f);
+        assertEquals(1, buffer.size());
+        assertEquals(74f, buffer.valueAt(0), 0f);
+    }
+
+    @Test
+    public void evictsAcrossTheWraparound() {
+        HeartRateRingBuffer buffer = new HeartRateRingBuffer(4, 2_500L);
+        for (int i = 0; i < 6; i++) {
+            buffer.add(i * 1_000L, 60f + i);
+        }
+
+        // Samples 2..5 fill the buffer after wrapping; 2 falls out of the window
+        assertEquals(3, buffer.size());
+        assertEquals(3_000L, buffer.timestampAt(0));
+        assertEquals(65f, buffer.valueAt(2), 0f);
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        buffer.add(10_000L, 80f);
+        assertEquals(10_000L, buffer.latestTimestamp());
+    }
+}
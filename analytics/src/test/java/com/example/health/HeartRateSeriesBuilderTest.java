@@ -0,0 +1,62 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class HeartRateSeriesBuilderTest {
+
+    @Test
+    public void parsesDatesAndNumericValues() {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(1);
+
+        assertTrue(builder.addRaw(new Date(1_000L), 72L));
+        assertTrue(builder.addRaw(2_000L, 75.5));
+        HeartRateSeries series = builder.build();
+
+        assertEquals(2, series.size());
+        assertEquals(1_000L, series.timestampAt(0));
+        assertEquals(72f, series.valueAt(0), 0f);
+        assertEquals(2_000L, series.timestampAt(1));
+        assertEquals(75.5f, series.valueAt(1), 0f);
+    }
+
+    @Test
+    public void skipsAndCountsInvalidSamples() {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(4);
+
+        assertFalse(builder.addRaw(null, 72L));
+        assertFalse(builder.addRaw(new Date(1_000L), null));
+        assertFalse(builder.addRaw("yesterday", 72L));
+
+        assertEquals(3, builder.getRejectedCount());
+        assertSame(HeartRateSeries.EMPTY, builder.build());
+    }
+
+    @Test
+    public void classifiesZonesAtThresholds() {
+        assertEquals(HeartRateZone.LOW, HeartRateZone.classify(59));
+        assertEquals(HeartRateZone.NORMAL, HeartRateZone.classify(60));
+        assertEquals(HeartRateZone.NORMAL, HeartRateZone.classify(100));
+        assertEquals(HeartRateZone.HIGH, HeartRateZone.classify(101));
+    }
+
+    @Test
+    public void findsFirstIndexAtOrAfterTimestamp() {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(3);
+        builder.add(1_000L, 60f);
+        builder.add(2_000L, 61f);
+        builder.add(3_000L, 62f);
+        HeartRateSeries series = builder.build();
+
+        assertEquals(0, series.indexAtOrAfter(0L));
+        assertEquals(1, series.indexAtOrAfter(2_000L));
+        assertEquals(2, series.indexAtOrAfter(2_001L));
+        assertEquals(3, series.indexAtOrAfter(5_000L));
+    }
+}
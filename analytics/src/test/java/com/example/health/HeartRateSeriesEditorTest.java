@@ -0,0 +1,64 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HeartRateSeriesEditorTest {
+
+    private static HeartRateSeries series(long... timestamps) {
+        float[] values = new float[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            values[i] = 70f;
+        }
+        return new HeartRateSeries(timestamps, values, timestamps.length);
+    }
+
+    @Test
+    public void insertsInTimeOrderAndReplacesExistingSamples() {
+        HeartRateSeriesEditor editor = new HeartRateSeriesEditor(series(1_000L, 3_000L));
+
+        assertTrue(editor.put(2_000L, 80f));
+        assertTrue(editor.put(4_000L, 90f));
+        assertTrue(editor.put(3_000L, 75f));
+        assertFalse(editor.put(3_000L, 75f));
+
+        HeartRateSeries view = editor.view();
+        assertEquals(4, view.size());
+        assertEquals(2_000L, view.timestampAt(1));
+        assertEquals(80f, view.valueAt(1), 0f);
+        assertEquals(75f, view.valueAt(2), 0f);
+        assertEquals(4_000L, view.lastTimestamp());
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        HeartRateSeriesEditor editor = new HeartRateSeriesEditor(HeartRateSeries.EMPTY);
+        for (int i = 100; i > 0; i--) {
+            editor.put(i, i);
+        }
+
+        HeartRateSeries view = editor.view();
+        assertEquals(100, view.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, view.timestampAt(i));
+        }
+    }
+
+    @Test
+    public void removesSamplesByTimestamp() {
+        HeartRateSeriesEditor editor = new HeartRateSeriesEditor(series(1_000L, 2_000L, 3_000L));
+
+        assertTrue(editor.remove(2_000L));
+        assertFalse(editor.remove(2_000L));
+        assertEquals(-2, editor.indexOf(2_000L));
+        assertEquals(3_000L, editor.view().timestampAt(1));
+
+        editor.remove(1_000L);
+        editor.remove(3_000L);
+        assertSame(HeartRateSeries.EMPTY, editor.view());
+    }
+}
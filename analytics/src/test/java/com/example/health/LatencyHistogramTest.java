@@ -0,0 +1,57 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(99));
+        assertEquals(1, histogram.getMin());
+        assertEquals(5.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+
+        assertWithin(5_000, histogram.getPercentile(50));
+        assertWithin(9_500, histogram.getPercentile(95));
+        assertWithin(9_900, histogram.getPercentile(99));
+        assertEquals(10_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void bucketsCoverValuesContiguously() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            assertTrue(index == 0 || value > LatencyHistogram.bucketUpperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-40);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.07);
+    }
+}
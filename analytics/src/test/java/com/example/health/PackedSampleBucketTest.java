@@ -0,0 +1,50 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PackedSampleBucketTest {
+
+    private static final long BUCKET_START = 1_700_000_040_000L;
+
+    @Test
+    public void keepsSamplesSortedAndReplacesDuplicateOffsets() {
+        PackedSampleBucket bucket = new PackedSampleBucket(BUCKET_START);
+
+        bucket.add(BUCKET_START + 2_000, 72);
+        bucket.add(BUCKET_START, 70);
+        bucket.add(BUCKET_START + 1_000, 71);
+        bucket.add(BUCKET_START + 2_000, 73);
+
+        assertEquals(Arrays.asList(0, 1_000, 2_000), bucket.offsetList());
+        assertEquals(Arrays.asList(70, 71, 73), bucket.valueList());
+    }
+
+    @Test
+    public void mergeKeepsInMemorySamples() {
+        PackedSampleBucket bucket = new PackedSampleBucket(BUCKET_START);
+        bucket.add(BUCKET_START + 1_000, 80);
+
+        bucket.merge(Arrays.asList(0L, 1_000L, 3_000L), Arrays.asList(60L, 61L, 63L));
+
+        assertEquals(Arrays.asList(0, 1_000, 3_000), bucket.offsetList());
+        assertEquals(Arrays.asList(60, 80, 63), bucket.valueList());
+    }
+
+    @Test
+    public void unpackRestoresAbsoluteTimestamps() {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(4);
+
+        int appended = PackedSampleBucket.unpack(BUCKET_START,
+                Arrays.asList(0L, 500L, "bad"), Arrays.asList(70L, 71.5, 72L), builder);
+        HeartRateSeries series = builder.build();
+
+        assertEquals(2, appended);
+        assertEquals(BUCKET_START, series.timestampAt(0));
+        assertEquals(BUCKET_START + 500, series.timestampAt(1));
+        assertEquals(71.5f, series.valueAt(1), 0f);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReadingWatermarkTest {
+
+    @Test
+    public void emptyFirstSyncStaysIncompleteUntilReadingsArrive() {
+        ReadingWatermark watermark = new ReadingWatermark();
+        // The first page came back empty
+        watermark.markComplete();
+        assertFalse(watermark.isComplete());
+        assertFalse(watermark.hasSynced());
+
+        // A later open pages again from the newest reading and finds the readings written since
+        watermark.include(5_000L, 9_000L);
+        watermark.markComplete();
+        assertTrue(watermark.isComplete());
+        assertEquals(5_000L, watermark.getOldest());
+        assertEquals(9_000L, watermark.getNewest());
+    }
+
+    @Test
+    public void completeStateWithoutAWatermarkIsNotTrusted() {
+        ReadingWatermark saved = new ReadingWatermark(Long.MIN_VALUE, Long.MAX_VALUE, true);
+        assertFalse(saved.isComplete());
+
+        ReadingWatermark synced = new ReadingWatermark(9_000L, 5_000L, true);
+        assertTrue(synced.isComplete());
+    }
+
+    @Test
+    public void includeWidensTheSyncedSpan() {
+        ReadingWatermark watermark = new ReadingWatermark(9_000L, 5_000L, false);
+        watermark.include(2_000L, 4_000L);
+        watermark.include(9_000L, 12_000L);
+
+        assertEquals(2_000L, watermark.getOldest());
+        assertEquals(12_000L, watermark.getNewest());
+    }
+}
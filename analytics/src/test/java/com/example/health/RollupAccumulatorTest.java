@@ -0,0 +1,75 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RollupAccumulatorTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    public void tracksMinMaxAndMeanWithinABucket() {
+        RollupAccumulator accumulator = new RollupAccumulator(RollupResolution.MINUTE);
+        accumulator.add(MINUTE + 1_000L, 70f);
+        accumulator.add(MINUTE + 2_000L, 90f);
+        accumulator.add(MINUTE + 3_000L, 65f);
+
+        assertEquals(MINUTE, accumulator.getBucketStart());
+        assertEquals(65f, accumulator.getMin(), 0f);
+        assertEquals(90f, accumulator.getMax(), 0f);
+        assertEquals(75.0, accumulator.getMean(), 1e-9);
+        assertEquals(3, accumulator.getCount());
+    }
+
+    @Test
+    public void detectsBucketRollover() {
+        RollupAccumulator accumulator = new RollupAccumulator(RollupResolution.MINUTE);
+        assertFalse(accumulator.isOutsideBucket(MINUTE));
+        accumulator.add(MINUTE, 70f);
+
+        assertFalse(accumulator.isOutsideBucket(2 * MINUTE - 1));
+        assertTrue(accumulator.isOutsideBucket(2 * MINUTE));
+
+        accumulator.reset(2 * MINUTE + 5_000L);
+        accumulator.add(2 * MINUTE + 5_000L, 80f);
+        assertEquals(2 * MINUTE, accumulator.getBucketStart());
+        assertEquals(80f, accumulator.getMin(), 0f);
+        assertEquals(80f, accumulator.getMax(), 0f);
+        assertEquals(1, accumulator.getCount());
+    }
+
+    @Test
+    public void sendsOnlyUnwrittenIncrements() {
+        RollupAccumulator accumulator = new RollupAccumulator(RollupResolution.HOUR);
+        accumulator.add(0, 70f);
+        accumulator.add(1_000L, 80f);
+        accumulator.markWritten();
+        assertFalse(accumulator.hasUnwrittenSamples());
+        assertTrue(accumulator.hasWrittenSamples());
+
+        accumulator.add(2_000L, 60f);
+        assertEquals(60.0, accumulator.getUnwrittenSum(), 1e-9);
+        assertEquals(1, accumulator.getUnwrittenCount());
+    }
+
+    @Test
+    public void holdsExtremesUntilThePersistedCopyIsMerged() {
+        RollupAccumulator accumulator = new RollupAccumulator(RollupResolution.DAY);
+        accumulator.add(0, 70f);
+        accumulator.awaitPersistedExtremes();
+        assertTrue(accumulator.hasPendingExtremes());
+
+        accumulator.add(1_000L, 75f);
+        accumulator.mergeExtremes(55f, 140f);
+        assertFalse(accumulator.hasPendingExtremes());
+        assertEquals(55f, accumulator.getMin(), 0f);
+        assertEquals(140f, accumulator.getMax(), 0f);
+
+        accumulator.awaitPersistedExtremes();
+        accumulator.reset(RollupResolution.DAY.getBucketMillis());
+        assertFalse(accumulator.hasPendingExtremes());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class RollupBucketSetTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    public void opensHourAndDayBucketsThatAwaitTheirExtremes() {
+        RollupBucketSet buckets = new RollupBucketSet();
+        List<RollupAccumulator> opened = buckets.add(HOUR + 1_000L, 70f);
+
+        assertEquals(2, opened.size());
+        assertEquals(RollupResolution.HOUR, opened.get(0).getResolution());
+        assertEquals(RollupResolution.DAY, opened.get(1).getResolution());
+        assertTrue(opened.get(0).hasPendingExtremes());
+        assertTrue(buckets.add(HOUR + 2_000L, 75f).isEmpty());
+    }
+
+    @Test
+    public void keepsAClosedBucketUntilItsPendingReadCompletes() {
+        RollupBucketSet buckets = new RollupBucketSet();
+        RollupAccumulator firstHour = buckets.add(HOUR + 1_000L, 70f).get(0);
+        buckets.add(HOUR + 2_000L, 95f);
+        for (RollupAccumulator accumulator : buckets.all()) {
+            accumulator.markWritten();
+        }
+
+        assertTrue(buckets.closesMinute(2 * HOUR));
+        List<RollupAccumulator> opened = buckets.add(2 * HOUR, 80f);
+        RollupAccumulator secondHour = opened.get(0);
+        assertEquals(2 * HOUR, secondHour.getBucketStart());
+        assertEquals(1, buckets.getClosedPendingCount());
+        assertTrue(buckets.all().contains(firstHour));
+        assertEquals(HOUR, firstHour.getBucketStart());
+
+        assertTrue(buckets.onExtremesRead(firstHour, 60.0, 90.0));
+        assertEquals(60f, firstHour.getMin(), 0f);
+        assertEquals(95f, firstHour.getMax(), 0f);
+        assertFalse(firstHour.hasPendingExtremes());
+        assertEquals(0, buckets.getClosedPendingCount());
+        assertFalse(buckets.all().contains(firstHour));
+        assertTrue(secondHour.hasPendingExtremes());
+    }
+
+    @Test
+    public void dropsAClosedBucketOnceItsExtremesAreComplete() {
+        RollupBucketSet buckets = new RollupBucketSet();
+        RollupAccumulator firstHour = buckets.add(HOUR + 1_000L, 70f).get(0);
+        assertFalse(buckets.onExtremesRead(firstHour, null, null));
+
+        RollupAccumulator secondHour = buckets.add(2 * HOUR, 80f).get(0);
+        assertEquals(0, buckets.getClosedPendingCount());
+        assertEquals(3, buckets.all().size());
+        assertEquals(2 * HOUR, secondHour.getBucketStart());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SampleChangeDetectorTest {
+
+    @Test
+    public void dropsRedeliveredSnapshots() {
+        SampleChangeDetector detector = new SampleChangeDetector();
+
+        assertTrue(detector.isNewSample(false, null, 1_000L, 72L, "active"));
+        assertFalse(detector.isNewSample(false, null, 1_000L, 72L, "active"));
+        assertTrue(detector.isNewSample(false, 7L, 2_000L, 73L, "active"));
+        assertFalse(detector.isNewSample(false, 7L, 2_000L, 73L, "active"));
+        assertEquals(2, detector.getAcceptedCount());
+        assertEquals(2, detector.getDuplicateCount());
+    }
+
+    @Test
+    public void keepsRepeatedValuesWithNewTimestamps() {
+        SampleChangeDetector detector = new SampleChangeDetector();
+
+        assertTrue(detector.isNewSample(false, null, 1_000L, 72L, "active"));
+        assertTrue(detector.isNewSample(false, null, 2_000L, 72L, "active"));
+        assertTrue(detector.isNewSample(false, null, 3_000L, 72L, "active"));
+        assertEquals(3, detector.getAcceptedCount());
+    }
+
+    @Test
+    public void acceptsUnmarkedSamplesButNotConfirmedEchoes() {
+        SampleChangeDetector detector = new SampleChangeDetector();
+
+        assertTrue(detector.isNewSample(false, null, null, 72L, "idle"));
+        assertTrue(detector.isNewSample(false, null, null, 72L, "idle"));
+
+        // Our own command write: the local echo, then the server's copy with the same reading
+        assertFalse(detector.isNewSample(true, null, null, 72L, "measuring"));
+        assertFalse(detector.isNewSample(false, null, null, 72L, "measuring"));
+        assertTrue(detector.isNewSample(false, null, null, 72L, "measuring"));
+
+        assertFalse(detector.isNewSample(false, null, null, null, "measuring"));
+        assertEquals(3, detector.getAcceptedCount());
+        assertEquals(1, detector.getPendingWriteCount());
+        assertEquals(1, detector.getDuplicateCount());
+    }
+
+    @Test
+    public void ignoresStatusOnlySnapshotsFromTheWatch() {
+        SampleChangeDetector detector = new SampleChangeDetector();
+
+        assertTrue(detector.isNewSample(false, null, null, 72L, "measuring"));
+        // The watch acks a command or reports a status without a new reading
+        assertFalse(detector.isNewSample(false, null, null, 72L, "measuring, acked 4"));
+        assertFalse(detector.isNewSample(false, null, null, 72L, "idle"));
+        assertTrue(detector.isNewSample(false, null, null, 75L, "idle"));
+        assertEquals(2, detector.getAcceptedCount());
+        assertEquals(2, detector.getDuplicateCount());
+    }
+}
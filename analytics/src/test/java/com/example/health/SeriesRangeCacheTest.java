@@ -0,0 +1,128 @@
+package com.example.health;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SeriesRangeCacheTest {
+
+    private static HeartRateSeries series(long... timestamps) {
+        float[] values = new float[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            values[i] = timestamps[i] / 10f;
+        }
+        return new HeartRateSeries(timestamps, values, timestamps.length);
+    }
+
+    private static long[] timestamps(HeartRateSeries series) {
+        long[] result = new long[series.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = series.timestampAt(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void servesSubRangesOfALoadedRange() {
+        SeriesRangeCache cache = new SeriesRangeCache(100);
+        cache.put(100, 200, series(100, 150, 199));
+
+        assertArrayEquals(new long[]{150, 199}, timestamps(cache.get(120, 200)));
+        assertEquals(15f, cache.get(150, 151).valueAt(0), 0f);
+        assertSame(HeartRateSeries.EMPTY, cache.get(160, 190));
+        assertNull(cache.get(50, 150));
+        assertNull(cache.get(150, 250));
+    }
+
+    @Test
+    public void mergesOverlappingAndTouchingRanges() {
+        SeriesRangeCache cache = new SeriesRangeCache(100);
+        cache.put(100, 200, series(110, 190));
+        cache.put(300, 400, series(310));
+        cache.put(200, 300, series(250));
+        assertEquals(1, cache.getSegmentCount());
+
+        // The newer load replaces the samples inside its range
+        cache.put(150, 320, series(180, 260));
+        assertEquals(1, cache.getSegmentCount());
+        assertArrayEquals(new long[]{110, 180, 260}, timestamps(cache.get(100, 400)));
+        assertEquals(3, cache.getSampleCount());
+    }
+
+    @Test
+    public void reportsUnloadedGaps() {
+        SeriesRangeCache cache = new SeriesRangeCache(100);
+        cache.put(100, 200, series(150));
+        cache.put(300, 400, series(350));
+
+        List<long[]> gaps = cache.missing(0, 500);
+        assertEquals(3, gaps.size());
+        assertArrayEquals(new long[]{0, 100}, gaps.get(0));
+        assertArrayEquals(new long[]{200, 300}, gaps.get(1));
+        assertArrayEquals(new long[]{400, 500}, gaps.get(2));
+        assertEquals(0, cache.missing(120, 180).size());
+        assertArrayEquals(new long[]{200, 250}, cache.missing(150, 250).get(0));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSegments() {
+        SeriesRangeCache cache = new SeriesRangeCache(4);
+        cache.put(0, 100, series(10, 20));
+        cache.put(200, 300, series(210, 220));
+        cache.get(0, 100);
+        cache.put(400, 500, series(410));
+
+        assertEquals(3, cache.getSampleCount());
+        assertNull(cache.get(200, 300));
+        assertEquals(2, cache.get(0, 100).size());
+    }
+
+    @Test
+    public void trimsAnOversizedRangeToItsNewestSamples() {
+        SeriesRangeCache cache = new SeriesRangeCache(2);
+        cache.put(0, 100, series(10, 20, 30));
+
+        assertEquals(2, cache.getSampleCount());
+        assertNull(cache.get(0, 100));
+        assertArrayEquals(new long[]{20, 30}, timestamps(cache.get(20, 100)));
+    }
+
+    @Test
+    public void updatesOnlyTimesInsideLoadedRanges() {
+        SeriesRangeCache cache = new SeriesRangeCache(100);
+        cache.put(100, 200, series(100, 150));
+
+        assertTrue(cache.update(120, 80f));
+        assertTrue(cache.update(150, 90f));
+        assertFalse(cache.update(200, 70f));
+        assertFalse(cache.update(50, 70f));
+
+        HeartRateSeries loaded = cache.get(100, 200);
+        assertArrayEquals(new long[]{100, 120, 150}, timestamps(loaded));
+        assertEquals(80f, loaded.valueAt(1), 0f);
+        assertEquals(90f, loaded.valueAt(2), 0f);
+        assertEquals(1, cache.getSegmentCount());
+        assertEquals(3, cache.getSampleCount());
+    }
+
+    @Test
+    public void removesOnlyFromLoadedRanges() {
+        SeriesRangeCache cache = new SeriesRangeCache(100);
+        cache.put(100, 200, series(100, 150));
+
+        assertTrue(cache.remove(150));
+        assertTrue(cache.remove(160));
+        assertFalse(cache.remove(250));
+
+        assertArrayEquals(new long[]{100}, timestamps(cache.get(100, 200)));
+        assertEquals(1, cache.getSampleCount());
+        assertEquals(1, cache.getSegmentCount());
+    }
+}
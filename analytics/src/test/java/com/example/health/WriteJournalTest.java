@@ -0,0 +1,112 @@
+package com.example.health;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+public class WriteJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pendingWritesSurviveReopen() throws IOException {
+        File file = new File(folder.getRoot(), "journal/writes.log");
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.put("a", "1");
+            journal.put("b", "2");
+            journal.put("a", "3");
+            journal.remove("b");
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            List<WriteJournal.Entry> entries = journal.peek(10);
+            assertEquals(1, entries.size());
+            assertEquals("a", entries.get(0).getKey());
+            assertEquals("3", entries.get(0).getPayload());
+        }
+    }
+
+    @Test
+    public void removeIfUnchangedKeepsSupersededWrites() throws IOException {
+        try (WriteJournal journal = WriteJournal.open(folder.newFile())) {
+            journal.put("doc", "v1");
+            journal.put("doc", "v2");
+
+            assertFalse(journal.removeIfUnchanged("doc", "v1"));
+            assertTrue(journal.contains("doc"));
+            assertTrue(journal.removeIfUnchanged("doc", "v2"));
+            assertEquals(0, journal.size());
+        }
+    }
+
+    @Test
+    public void emptyJournalIsTruncated() throws IOException {
+        try (WriteJournal journal = WriteJournal.open(folder.newFile())) {
+            journal.put("a", "payload");
+            journal.remove("a");
+
+            assertEquals(0, journal.getFileBytes());
+        }
+    }
+
+    @Test
+    public void tornTailIsDiscardedOnOpen() throws IOException {
+        File file = folder.newFile();
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.put("a", "1");
+            journal.put("b", "2");
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() - 3);
+        }
+
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertEquals(1, journal.size());
+            assertTrue(journal.contains("a"));
+            journal.put("c", "3");
+        }
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertEquals(2, journal.size());
+            assertTrue(journal.contains("c"));
+        }
+    }
+
+    @Test
+    public void rewritesMostlyDeadLog() throws IOException {
+        File file = folder.newFile();
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            journal.put("keep", "x");
+            for (int i = 0; i < 500; i++) {
+                journal.put("hot", "value-" + i);
+            }
+            assertTrue(journal.getFileBytes() < 64 * 40);
+        }
+        try (WriteJournal journal = WriteJournal.open(file)) {
+            assertEquals(2, journal.size());
+            assertEquals("value-499", journal.peek(2).get(1).getPayload());
+        }
+    }
+
+    @Test
+    public void backoffGrowsWithJitterAndCaps() {
+        RetryBackoff backoff = new RetryBackoff(1000, 60_000, new Random(42));
+        long[] ceilings = {1000, 2000, 4000, 8000, 16_000, 32_000, 60_000, 60_000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelayMs();
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling);
+        }
+        backoff.reset();
+        assertTrue(backoff.nextDelayMs() <= 1000);
+    }
+}
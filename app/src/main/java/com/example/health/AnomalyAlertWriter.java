@@ -0,0 +1,51 @@
+package com.example.health;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists {@link AnomalyEvent}s to the {@code heartRateAlerts} collection. Document IDs are derived
+ * from the event, so replaying the same samples never duplicates an alert.
+ */
+public class AnomalyAlertWriter {
+
+    private static final String TAG = "AnomalyAlertWriter";
+    public static final String COLLECTION = "heartRateAlerts";
+
+    private final FirebaseFirestore db;
+    private final String patientId;
+    private final String deviceId;
+
+    public AnomalyAlertWriter(FirebaseFirestore db, String patientId, String deviceId) {
+        this.db = db;
+        this.patientId = patientId;
+        this.deviceId = deviceId;
+    }
+
+    public void write(AnomalyEvent event) {
+        String type = event.getType().getId();
+        String phase = event.isOnset() ? "onset" : "resolved";
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("patientId", patientId);
+        data.put("deviceId", deviceId);
+        data.put("type", type);
+        data.put("phase", phase);
+        data.put("timestamp", new Timestamp(new Date(event.getTimestampMillis())));
+        data.put("heartRate", event.getBpm());
+        data.put("baselineHeartRate", event.getBaselineBpm());
+        data.put("createdAt", FieldValue.serverTimestamp());
+
+        db.collection(COLLECTION)
+                .document(patientId + "_" + type + "_" + phase + "_" + event.getTimestampMillis())
+                .set(data)
+                .addOnFailureListener(e -> Log.e(TAG, "Alert write failed", e));
+    }
+}
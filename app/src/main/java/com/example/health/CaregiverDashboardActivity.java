@@ -0,0 +1,89 @@
+package com.example.health;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Live tiles for every patient assigned to the signed-in caregiver.
+ */
+public class CaregiverDashboardActivity extends AppCompatActivity implements CaregiverFeed.Listener {
+
+    private static final int SPAN_COUNT = 2;
+
+    private RecyclerView rvPatients;
+    private TextView tvEmpty;
+    private PatientTileAdapter adapter;
+    private CaregiverFeed feed;
+    private List<CaregiverFeed.PatientTile> latestTiles = Collections.emptyList();
+    // Chunk listeners can deliver back to back; submit at most one list per frame
+    private final FrameCoalescer tileUpdates = new FrameCoalescer(requestedAt -> showTiles());
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_caregiver_dashboard);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(R.string.caregiver_dashboard);
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        rvPatients = findViewById(R.id.rvPatients);
+        tvEmpty = findViewById(R.id.tvEmpty);
+        adapter = new PatientTileAdapter();
+        rvPatients.setLayoutManager(new GridLayoutManager(this, SPAN_COUNT));
+        rvPatients.setAdapter(adapter);
+        // Tiles change content, never size, so skip the change animation's cross-fade
+        rvPatients.setItemAnimator(null);
+        feed = new CaregiverFeed(this);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            finish();
+            return;
+        }
+        feed.start(user.getUid());
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        feed.stop();
+        tileUpdates.cancel();
+    }
+
+    @Override
+    public void onTilesChanged(List<CaregiverFeed.PatientTile> tiles) {
+        latestTiles = tiles;
+        tileUpdates.request();
+    }
+
+    private void showTiles() {
+        adapter.submitList(latestTiles);
+        tvEmpty.setVisibility(latestTiles.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
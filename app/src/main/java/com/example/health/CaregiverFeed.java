@@ -0,0 +1,272 @@
+package com.example.health;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Live heart-rate state for every patient assigned to a caregiver ({@code patients.caregiverIds}).
+ * Instead of one listener per device, wear devices are watched through chunked {@code whereIn}
+ * queries on their owner, {@link #WHERE_IN_LIMIT} patients per listener, so 50 patients cost three
+ * listeners in total. Chunk assignments are stable: a membership change re-subscribes only the chunks
+ * it touches, and each keeps its device state until the first snapshot of its new query replaces it.
+ * Document changes are applied to a per-patient state table and published as an immutable list of
+ * {@link PatientTile}s. Must be used from the main thread.
+ */
+public class CaregiverFeed {
+
+    private static final String TAG = "CaregiverFeed";
+    // Firestore limit on the values of a single 'in' filter
+    static final int WHERE_IN_LIMIT = 30;
+
+    public interface Listener {
+        void onTilesChanged(List<PatientTile> tiles);
+    }
+
+    public static final class PatientTile {
+        public final String userId;
+        public final String name;
+        public final Integer heartRate;
+        public final Long sampleTimestamp;
+        public final boolean measuring;
+
+        PatientTile(String userId, String name, Integer heartRate, Long sampleTimestamp, boolean measuring) {
+            this.userId = userId;
+            this.name = name;
+            this.heartRate = heartRate;
+            this.sampleTimestamp = sampleTimestamp;
+            this.measuring = measuring;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PatientTile)) return false;
+            PatientTile other = (PatientTile) o;
+            return measuring == other.measuring && userId.equals(other.userId) && Objects.equals(name, other.name)
+                    && Objects.equals(heartRate, other.heartRate) && Objects.equals(sampleTimestamp, other.sampleTimestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, name, heartRate, sampleTimestamp, measuring);
+        }
+    }
+
+    private static final class DeviceState {
+        final Integer heartRate;
+        final Long sampleTimestamp;
+        final boolean measuring;
+
+        DeviceState(DocumentSnapshot doc) {
+            Long hr = doc.getLong("heartRate");
+            Object sample = doc.get("sampleTimestamp");
+            heartRate = hr != null ? hr.intValue() : null;
+            sampleTimestamp = HeartRateSampleParser.parseTimestamp(sample instanceof Timestamp ? ((Timestamp) sample).toDate() : sample);
+            measuring = "measuring".equals(doc.getString("status"));
+        }
+    }
+
+    private static final class Chunk {
+        final List<String> owners = new ArrayList<>();
+        // Device document ID to state, and device document ID to owner, per the last snapshot of the chunk
+        final Map<String, DeviceState> devices = new HashMap<>();
+        final Map<String, String> deviceOwners = new HashMap<>();
+        ListenerRegistration registration;
+        boolean awaitingSnapshot;
+    }
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final Listener listener;
+    // Patient owner user ID to display name, in display order
+    private final Map<String, String> patientNames = new HashMap<>();
+    private final List<String> patientOrder = new ArrayList<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+    private ListenerRegistration patientRegistration;
+    private Set<String> subscribedOwners = Collections.emptySet();
+
+    public CaregiverFeed(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void start(String caregiverId) {
+        stop();
+        patientRegistration = db.collection("patients")
+                .whereArrayContains("caregiverIds", caregiverId)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Patient list listener error", e);
+                        return;
+                    }
+                    onPatientsChanged(snapshot);
+                });
+    }
+
+    public void stop() {
+        if (patientRegistration != null) {
+            patientRegistration.remove();
+            patientRegistration = null;
+        }
+        for (Chunk chunk : chunks) {
+            chunk.registration.remove();
+        }
+        chunks.clear();
+        subscribedOwners = Collections.emptySet();
+        patientNames.clear();
+        patientOrder.clear();
+    }
+
+    public int getListenerCount() {
+        return chunks.size() + (patientRegistration != null ? 1 : 0);
+    }
+
+    private void onPatientsChanged(QuerySnapshot snapshot) {
+        patientNames.clear();
+        patientOrder.clear();
+        for (DocumentSnapshot doc : snapshot) {
+            String userId = doc.getString("userId");
+            if (userId == null || patientNames.containsKey(userId)) continue;
+            String name = (nonNull(doc.getString("firstName")) + " " + nonNull(doc.getString("lastName"))).trim();
+            patientNames.put(userId, name.isEmpty() ? doc.getId() : name);
+            patientOrder.add(userId);
+        }
+        Collections.sort(patientOrder, (a, b) -> patientNames.get(a).compareToIgnoreCase(patientNames.get(b)));
+
+        // Renames only need a republish; membership changes re-plan the chunks
+        Set<String> owners = new HashSet<>(patientOrder);
+        if (!owners.equals(subscribedOwners)) {
+            subscribe(owners);
+        }
+        publish();
+    }
+
+    /**
+     * Moves the chunks to {@code owners}: owners that left are dropped from their chunk, new owners
+     * fill chunks that change anyway before other chunks with room, and only then open new chunks.
+     * Untouched chunks keep their listeners.
+     */
+    private void subscribe(Set<String> owners) {
+        List<Chunk> changed = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.owners.retainAll(owners)) {
+                changed.add(chunk);
+            }
+        }
+        List<String> added = new ArrayList<>(owners);
+        added.removeAll(subscribedOwners);
+        Collections.sort(added);
+        for (String owner : added) {
+            Chunk target = firstWithRoom(changed);
+            if (target == null) {
+                target = firstWithRoom(chunks);
+            }
+            if (target == null) {
+                target = new Chunk();
+                chunks.add(target);
+            }
+            target.owners.add(owner);
+            if (!changed.contains(target)) {
+                changed.add(target);
+            }
+        }
+
+        for (Chunk chunk : changed) {
+            if (chunk.registration != null) {
+                chunk.registration.remove();
+                chunk.registration = null;
+            }
+            if (chunk.owners.isEmpty()) {
+                chunks.remove(chunk);
+            } else {
+                listen(chunk);
+            }
+        }
+        subscribedOwners = owners;
+        Log.d(TAG, owners.size() + " patients over " + chunks.size() + " device listeners, "
+                + changed.size() + " re-planned");
+    }
+
+    private static Chunk firstWithRoom(List<Chunk> candidates) {
+        for (Chunk chunk : candidates) {
+            if (chunk.owners.size() < WHERE_IN_LIMIT) return chunk;
+        }
+        return null;
+    }
+
+    private void listen(Chunk chunk) {
+        chunk.awaitingSnapshot = true;
+        chunk.registration = db.collection("wearDevices")
+                .whereIn("userId", new ArrayList<>(chunk.owners))
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Device chunk listener error", e);
+                        return;
+                    }
+                    applyDeviceChanges(chunk, snapshot);
+                });
+    }
+
+    private void applyDeviceChanges(Chunk chunk, QuerySnapshot snapshot) {
+        boolean replaced = chunk.awaitingSnapshot;
+        if (replaced) {
+            // The first snapshot of a query lists every matching device; until then the old state is shown
+            chunk.awaitingSnapshot = false;
+            chunk.devices.clear();
+            chunk.deviceOwners.clear();
+        }
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            DocumentSnapshot doc = change.getDocument();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                chunk.devices.remove(doc.getId());
+                chunk.deviceOwners.remove(doc.getId());
+            } else {
+                chunk.devices.put(doc.getId(), new DeviceState(doc));
+                chunk.deviceOwners.put(doc.getId(), doc.getString("userId"));
+            }
+        }
+        if (replaced || !snapshot.getDocumentChanges().isEmpty()) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        Map<String, DeviceState> byOwner = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            for (Map.Entry<String, String> entry : chunk.deviceOwners.entrySet()) {
+                DeviceState state = chunk.devices.get(entry.getKey());
+                DeviceState current = byOwner.get(entry.getValue());
+                // With several devices per patient, prefer the one that is measuring
+                if (current == null || (!current.measuring && state.measuring)) {
+                    byOwner.put(entry.getValue(), state);
+                }
+            }
+        }
+
+        List<PatientTile> tiles = new ArrayList<>(patientOrder.size());
+        for (String userId : patientOrder) {
+            DeviceState state = byOwner.get(userId);
+            tiles.add(state != null
+                    ? new PatientTile(userId, patientNames.get(userId), state.heartRate, state.sampleTimestamp, state.measuring)
+                    : new PatientTile(userId, patientNames.get(userId), null, null, false));
+        }
+        listener.onTilesChanged(Collections.unmodifiableList(tiles));
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.health;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Collapses bursts of UI update requests into at most one render per {@link Choreographer} frame.
+ * Requests that arrive while a render is already scheduled are folded into it; the renderer is
+ * expected to read the latest state, so nothing but redundant layout work is dropped. Callers count
+ * renders and folded requests in {@link PipelineMetrics}.
+ * Must be used from the main thread.
+ */
+public class FrameCoalescer {
+
+    public interface Renderer {
+        /**
+         * @param requestedAt {@link SystemClock#uptimeMillis()} of the oldest request served by this frame
+         */
+        void render(long requestedAt);
+    }
+
+    private final Renderer renderer;
+    private final Choreographer.FrameCallback frameCallback = this::onFrame;
+    // uptimeMillis of the oldest pending request, or -1 when no frame is scheduled
+    private long pendingSince = -1;
+
+    public FrameCoalescer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Schedules a render on the next frame. Returns {@code true} if one was already scheduled and this
+     * request was folded into it.
+     */
+    public boolean request() {
+        if (pendingSince >= 0) return true;
+        pendingSince = SystemClock.uptimeMillis();
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+        return false;
+    }
+
+    public void cancel() {
+        if (pendingSince < 0) return;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        pendingSince = -1;
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        long requestedAt = pendingSince;
+        pendingSince = -1;
+        renderer.render(requestedAt);
+    }
+}
@@ -1,39 +1,88 @@
 package com.example.health;
 
+import android.Manifest;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.content.ContextCompat;
 
-import com.google.firebase.Timestamp;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
+import java.util.List;
 
-import java.util.HashMap;
-import java.util.Map;
+public class HeartRateActivity extends AppCompatActivity implements HeartRateMonitorService.Listener {
 
-public class HeartRateActivity extends AppCompatActivity {
+    private static final long JUMP_MESSAGE_MS = 10_000L;
 
     private TextView tvHeartRate;
+    private TextView tvAnomaly;
+    private SparklineView sparkline;
     private Button btnMeasure;
-    private boolean isMeasuring = false;
-    private final Handler handler = new Handler(Looper.getMainLooper());
-    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private String wearDeviceId;
     private String pairingCode;
     private String patientDocId;
     private String userEmail;
     private SharedPreferences sharedPref;
+    private HeartRateMonitorService monitorService;
+    private boolean isBound = false;
+    private AnomalyEvent.Type shownAnomaly;
+    private PipelineMetrics metrics;
+    // Latest sample not yet rendered; the watch may stream faster than the display refreshes
+    private int pendingHeartRate;
+
+    private final FrameCoalescer displayUpdates = new FrameCoalescer(requestedAt -> {
+        updateHeartRateDisplay(pendingHeartRate);
+        metrics.increment(PipelineMetrics.UI_RENDERS);
+        metrics.record(PipelineMetrics.SNAPSHOT_TO_DISPLAY, SystemClock.uptimeMillis() - requestedAt);
+    });
+
+    private final Runnable hideAnomaly = () -> {
+        shownAnomaly = null;
+        tvAnomaly.setVisibility(View.GONE);
+    };
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            monitorService = ((HeartRateMonitorService.LocalBinder) binder).getService();
+            monitorService.startSession(userEmail, pairingCode, wearDeviceId, patientDocId);
+            monitorService.addListener(HeartRateActivity.this);
+            sparkline.setBuffer(monitorService.getRecentSamples());
+            onMeasuringChanged(monitorService.isMeasuring());
+            Integer lastHeartRate = monitorService.getLastHeartRate();
+            if (lastHeartRate != null) {
+                updateHeartRateDisplay(lastHeartRate);
+            }
+            for (AnomalyEvent onset : monitorService.getOpenAnomalies()) {
+                onAnomaly(onset);
+            }
+            reportFullyDrawn();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            monitorService = null;
+        }
+    };
+
+    // The foreground notification is still shown in the task manager if this is denied
+    private final ActivityResultLauncher<String> notificationPermissionLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> startMeasurement());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,8 +90,10 @@ public class HeartRateActivity extends AppCompatActivity {
         setContentView(R.layout.activity_heart_rate);
 
         sharedPref = getSharedPreferences(SignInActivity.PREFS_NAME, MODE_PRIVATE);
+        PatientRepository repository = PatientRepository.getInstance(this);
+        metrics = PipelineMetrics.getInstance(this);
 
-        // Retrieve intent extras or shared preferences if null
+        // Retrieve intent extras or the repository cache if null
         userEmail = getIntent().getStringExtra("USER_EMAIL");
         if (userEmail == null) {
             userEmail = sharedPref.getString(SignInActivity.PREF_USER_EMAIL, null);
@@ -50,17 +101,17 @@ public class HeartRateActivity extends AppCompatActivity {
 
         pairingCode = getIntent().getStringExtra("PAIRING_CODE");
         if (pairingCode == null) {
-            pairingCode = sharedPref.getString(SignInActivity.PREF_PAIRING_CODE, null);
+            pairingCode = repository.getPairingCode();
         }
 
         wearDeviceId = getIntent().getStringExtra("WEAR_DEVICE_ID");
         if (wearDeviceId == null) {
-            wearDeviceId = sharedPref.getString(SignInActivity.PREF_DEVICE_ID, null);
+            wearDeviceId = repository.getWearDeviceId();
         }
 
         patientDocId = getIntent().getStringExtra("PATIENT_DOC_ID");
         if (patientDocId == null) {
-            patientDocId = sharedPref.getString(SignInActivity.PREF_PATIENT_ID, null);
+            patientDocId = repository.getPatientDocId();
         }
 
         // Check if essential data is available
@@ -73,7 +124,30 @@ public class HeartRateActivity extends AppCompatActivity {
         setupToolbar();
         initializeViews();
         setupButtonListeners();
-        setupHeartRateListener();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (wearDeviceId == null) return;
+        isBound = bindService(new Intent(this, HeartRateMonitorService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (tvAnomaly != null) {
+            tvAnomaly.removeCallbacks(hideAnomaly);
+        }
+        displayUpdates.cancel();
+        if (monitorService != null) {
+            monitorService.removeListener(this);
+            monitorService = null;
+        }
+        if (isBound) {
+            unbindService(serviceConnection);
+            isBound = false;
+        }
     }
 
     private void setupToolbar() {
@@ -88,12 +162,18 @@ public class HeartRateActivity extends AppCompatActivity {
     private void initializeViews() {
         tvHeartRate = findViewById(R.id.tvHeartRateValue);
         btnMeasure = findViewById(R.id.btnMeasure);
+        sparkline = findViewById(R.id.sparkline);
+        tvAnomaly = findViewById(R.id.tvAnomaly);
     }
 
     private void setupButtonListeners() {
         btnMeasure.setOnClickListener(v -> {
-            if (isMeasuring) {
-                stopMeasurement();
+            if (monitorService == null) return;
+            if (monitorService.isMeasuring()) {
+                monitorService.stopMeasurement();
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+                notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
             } else {
                 startMeasurement();
             }
@@ -103,110 +183,78 @@ public class HeartRateActivity extends AppCompatActivity {
     }
 
     private void startMeasurement() {
-        if (wearDeviceId == null) return;
-
-        isMeasuring = true;
-        btnMeasure.setText(R.string.stop_measurement);
-
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("command", "start_measurement");
-        updates.put("status", "measuring");
-        updates.put("lastUpdated", FieldValue.serverTimestamp());
-
-        db.collection("wearDevices").document(wearDeviceId)
-                .update(updates)
-                .addOnFailureListener(e -> {
-                    Log.e("HeartRateActivity", "Start measurement failed", e);
-                    stopMeasurement();
-                    Toast.makeText(this, "Failed to communicate with device", Toast.LENGTH_SHORT).show();
-                });
+        if (monitorService != null) {
+            monitorService.startMeasurement();
+        }
     }
 
-    private void stopMeasurement() {
-        isMeasuring = false;
-        btnMeasure.setText(R.string.measure);
-
-        if (wearDeviceId == null) return;
-
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("command", "stop_measurement");
-        updates.put("status", "idle");
-        updates.put("lastUpdated", FieldValue.serverTimestamp());
-
-        db.collection("wearDevices").document(wearDeviceId)
-                .update(updates)
-                .addOnFailureListener(e -> Log.e("HeartRateActivity", "Stop measurement failed", e));
+    @Override
+    public void onHeartRate(long timestamp, int heartRate) {
+        // The service has already persisted the sample; only the render is coalesced
+        pendingHeartRate = heartRate;
+        if (displayUpdates.request()) {
+            metrics.increment(PipelineMetrics.UI_UPDATES_COALESCED);
+        }
     }
 
-    private void setupHeartRateListener() {
-        if (wearDeviceId == null) return;
-
-        db.collection("wearDevices").document(wearDeviceId)
-                .addSnapshotListener((snapshot, e) -> {
-                    if (e != null) {
-                        Log.e("HeartRateActivity", "Listener error", e);
-                        return;
-                    }
-
-                    if (snapshot != null && snapshot.exists()) {
-                        handleHeartRateUpdate(snapshot);
-                        handleMeasurementStatus(snapshot);
-                    }
-                });
+    @Override
+    public void onMeasuringChanged(boolean measuring) {
+        btnMeasure.setText(measuring ? R.string.stop_measurement : R.string.measure);
     }
 
-    private void handleHeartRateUpdate(DocumentSnapshot doc) {
-        Long hr = doc.getLong("heartRate");
-        if (hr != null) {
-            int heartRate = hr.intValue();
-            updateHeartRateDisplay(heartRate);
-            saveHeartRateMeasurement(heartRate);
-        }
+    @Override
+    public void onCommandFailed() {
+        Toast.makeText(this, "Failed to communicate with device", Toast.LENGTH_SHORT).show();
     }
 
-    private void handleMeasurementStatus(DocumentSnapshot doc) {
-        String status = doc.getString("status");
-        if ("measuring".equals(status)) {
-            if (!isMeasuring) {
-                isMeasuring = true;
-                btnMeasure.setText(R.string.stop_measurement);
+    @Override
+    public void onAnomaly(AnomalyEvent event) {
+        if (event.isOnset()) {
+            tvAnomaly.removeCallbacks(hideAnomaly);
+            shownAnomaly = event.getType();
+            tvAnomaly.setText(getAnomalyMessage(event.getType()));
+            tvAnomaly.setVisibility(View.VISIBLE);
+            // Jumps have no resolved event, so their message times out
+            if (event.getType() == AnomalyEvent.Type.SUDDEN_JUMP) {
+                tvAnomaly.postDelayed(hideAnomaly, JUMP_MESSAGE_MS);
             }
-        } else {
-            if (isMeasuring) {
-                isMeasuring = false;
-                btnMeasure.setText(R.string.measure);
+        } else if (event.getType() == shownAnomaly) {
+            hideAnomaly.run();
+            // Another condition may still be open underneath the one that resolved
+            List<AnomalyEvent> open = monitorService != null ? monitorService.getOpenAnomalies() : null;
+            if (open != null && !open.isEmpty()) {
+                onAnomaly(open.get(open.size() - 1));
             }
         }
     }
 
-    private void saveHeartRateMeasurement(int heartRate) {
-        if (patientDocId == null || userEmail == null) return;
-
-        Map<String, Object> measurementData = new HashMap<>();
-        measurementData.put("patientId", patientDocId);
-        measurementData.put("userEmail", userEmail);
-        measurementData.put("heartRate", heartRate);
-        measurementData.put("timestamp", Timestamp.now());
-        measurementData.put("deviceId", wearDeviceId);
-        measurementData.put("source", "wear_os_device");
-
-        db.collection("heartRateMeasurements")
-                .add(measurementData)
-                .addOnFailureListener(e -> Log.e("HeartRateActivity", "Save failed", e));
+    private int getAnomalyMessage(AnomalyEvent.Type type) {
+        switch (type) {
+            case TACHYCARDIA:
+                return R.string.anomaly_tachycardia;
+            case BRADYCARDIA:
+                return R.string.anomaly_bradycardia;
+            case SUDDEN_JUMP:
+                return R.string.anomaly_sudden_jump;
+            default:
+                return R.string.anomaly_signal_dropout;
+        }
     }
 
     private void updateHeartRateDisplay(int heartRate) {
         tvHeartRate.setText(String.valueOf(heartRate));
         tvHeartRate.setTextColor(getHeartRateColor(heartRate));
+        sparkline.invalidate();
     }
 
     private int getHeartRateColor(int heartRate) {
-        if (heartRate < 60) {
-            return ContextCompat.getColor(this, R.color.heart_rate_low);
-        } else if (heartRate > 100) {
-            return ContextCompat.getColor(this, R.color.heart_rate_high);
-        } else {
-            return ContextCompat.getColor(this, R.color.heart_rate_normal);
+        switch (HeartRateZone.classify(heartRate)) {
+            case LOW:
+                return ContextCompat.getColor(this, R.color.heart_rate_low);
+            case HIGH:
+                return ContextCompat.getColor(this, R.color.heart_rate_high);
+            default:
+                return ContextCompat.getColor(this, R.color.heart_rate_normal);
         }
     }
 
@@ -228,11 +276,4 @@ public class HeartRateActivity extends AppCompatActivity {
         onBackPressed();
         return true;
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        handler.removeCallbacksAndMessages(null);
-        stopMeasurement();
-    }
 }
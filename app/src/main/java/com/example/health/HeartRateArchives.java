@@ -0,0 +1,87 @@
+package com.example.health;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the per-patient {@link HeartRateArchive} files under {@code files/archive}.
+ * All file work runs on a single background thread; results are delivered on the main thread.
+ */
+public class HeartRateArchives {
+
+    private static final String TAG = "HeartRateArchives";
+    private static final String DIRECTORY = "archive";
+
+    private static HeartRateArchives instance;
+
+    private final File directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, HeartRateArchive> archives = new HashMap<>();
+
+    public static synchronized HeartRateArchives getInstance(Context context) {
+        if (instance == null) {
+            instance = new HeartRateArchives(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private HeartRateArchives(Context context) {
+        directory = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Appends a live sample. Samples that are not newer than the archive's last one are ignored;
+     * the SQLite store remains the place for back-filled or corrected data.
+     */
+    public void append(String patientId, long timestampMillis, float bpm) {
+        executor.execute(() -> {
+            try {
+                archive(patientId).append(timestampMillis, bpm);
+            } catch (IOException e) {
+                Log.e(TAG, "Append failed", e);
+            }
+        });
+    }
+
+    public void flush(String patientId) {
+        executor.execute(() -> {
+            try {
+                archive(patientId).flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Flush failed", e);
+            }
+        });
+    }
+
+    public void loadRange(String patientId, long fromInclusive, long toExclusive, HeartRateLocalStore.SeriesCallback callback) {
+        executor.execute(() -> {
+            HeartRateSeries series = HeartRateSeries.EMPTY;
+            try {
+                series = archive(patientId).loadRange(fromInclusive, toExclusive);
+            } catch (IOException e) {
+                Log.e(TAG, "Range scan failed", e);
+            }
+            HeartRateSeries result = series;
+            mainHandler.post(() -> callback.onLoaded(result));
+        });
+    }
+
+    private HeartRateArchive archive(String patientId) throws IOException {
+        HeartRateArchive archive = archives.get(patientId);
+        if (archive == null) {
+            archive = HeartRateArchive.open(directory, patientId);
+            archives.put(patientId, archive);
+        }
+        return archive;
+    }
+}
@@ -3,37 +3,111 @@ package com.example.health;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.util.Pair;
 
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
-import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.datepicker.MaterialDatePicker;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class HeartRateHistoryActivity extends AppCompatActivity {
 
+    private static final int PAGE_SIZE = 200;
+    // Range queries are bounded on both ends, so they can page in larger steps
+    private static final int RANGE_PAGE_SIZE = 1000;
+    // About 1.2 MB of timestamps and values, a little over two months of one-minute readings
+    private static final int MAX_CACHED_SAMPLES = 100_000;
+    // Readings of the open window, and journaled writes retried after it closed, are still arriving;
+    // only ranges ending this long before the open window are cached as complete
+    private static final long RANGE_CACHE_LAG_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long INITIAL_LOCAL_WINDOW_MS = TimeUnit.DAYS.toMillis(1);
+    // Fraction of the visible range from the left edge at which the next older page is requested
+    private static final float LOAD_MORE_EDGE_FRACTION = 0.1f;
+    private static final int MIN_DOWNSAMPLE_POINTS = 200;
+    private static final int MAX_DECORATED_POINTS = 60;
+    // Buckets needed for a rollup resolution to count as filling the chart
+    private static final int ROLLUP_TARGET_POINTS = 100;
+    // Smallest x-axis tick step, in seconds
+    private static final float MIN_TICK_SECONDS = 60f;
+
     private LineChart lineChart;
     private ProgressBar progressBar;
     private TextView errorText;
     private FirebaseFirestore db = FirebaseFirestore.getInstance();
     private String pairingCode;
     private String userEmail;
+    private String patientKey;
+    private HeartRateLocalStore localStore;
+    private HeartRateArchives archives;
+    private String patientDocId;
+    private boolean hasLocalData = false;
+    // Rollup bucket means outlining history older than the synced readings, drawn as their own data set
+    private HeartRateSeries rollupSeries = HeartRateSeries.EMPTY;
+
+    private ReadingSyncState syncState;
+    private boolean isLoadingPage = false;
+    private boolean hasMorePages = true;
+    // Readings newer than the watermark are fetched once per screen open, before any older page
+    private boolean deltaSynced = false;
+    private boolean isFirstRemoteLoad = true;
+    // Only samples at or after this time are rendered; moves back as older pages arrive
+    private long windowStart = Long.MAX_VALUE;
+    // X values are seconds relative to this instant, which keeps recent samples within float precision
+    private final long xAxisBase = System.currentTimeMillis();
+    private HeartRateSeries renderedSeries = HeartRateSeries.EMPTY;
+    // Local store resolution of renderedSeries, or null while it holds rollup buckets
+    private String renderedResolution;
+    private int[] overviewIndices = new int[0];
+    private int[] visibleIndices = new int[0];
+
+    // Readings of every range loaded this session, so switching back to a range does not re-query it
+    private final SeriesRangeCache rangeCache = new SeriesRangeCache(MAX_CACHED_SAMPLES);
+    private boolean rangeSelected = false;
+    private long rangeFrom;
+    private long rangeTo;
+    // Bumped on every range change so responses for an abandoned range are not rendered
+    private int rangeGeneration = 0;
+    private int checkedRangeChipId = R.id.rangeAll;
+    // What the whole-history view shows, kept while a range is selected
+    private HeartRateSeries overviewSeries = HeartRateSeries.EMPTY;
+    private String overviewResolution;
+
+    // Live changes to the readings around the viewport; the scope is padded so small pans keep it
+    private ListenerRegistration liveRegistration;
+    private long liveFrom;
+    private long liveTo;
+    // New readings in the whole-history view, kept whatever part of the chart is on screen
+    private ListenerRegistration newestRegistration;
+    private long newestFrom;
+    // Owns the arrays behind renderedSeries so live changes are applied in place
+    private HeartRateSeriesEditor seriesEditor;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -54,8 +128,42 @@ public class HeartRateHistoryActivity extends AppCompatActivity {
 
         Log.d("HeartRateHistory", "Loading data for email: " + userEmail + " with pairing code: " + pairingCode);
 
+        // Live samples are stored under the patient document ID; fall back to the email for older intents
+        patientDocId = getIntent().getStringExtra("PATIENT_DOC_ID");
+        patientKey = patientDocId != null ? patientDocId : userEmail;
+        localStore = HeartRateLocalStore.getInstance(this);
+        archives = HeartRateArchives.getInstance(this);
+        syncState = ReadingSyncState.load(this, patientKey, pairingCode);
+        hasMorePages = !syncState.isComplete();
+
         setupChart();
-        loadHeartRateData();
+        setupRangeChips();
+        showLoading();
+        // Render the most recent locally stored window, or everything already synced, while remote data loads
+        windowStart = System.currentTimeMillis() - INITIAL_LOCAL_WINDOW_MS;
+        if (syncState.isComplete()) {
+            windowStart = 0;
+        } else if (syncState.hasSynced()) {
+            windowStart = Math.min(windowStart, syncState.getOldest());
+        }
+        loadLocalData(false, null);
+        // Only readings newer than the watermark are fetched; rollups outline what is not synced yet
+        loadNextPage();
+        if (patientDocId != null && !syncState.isComplete()) {
+            loadRollupOverview();
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        listenToVisibleRange();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        removeLiveListener();
     }
 
     private void setupChart() {
@@ -67,77 +175,704 @@ public class HeartRateHistoryActivity extends AppCompatActivity {
         XAxis xAxis = lineChart.getXAxis();
         xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
         xAxis.setDrawGridLines(false);
-        xAxis.setGranularity(1f);
+        xAxis.setGranularity(MIN_TICK_SECONDS);
         xAxis.setLabelRotationAngle(-45f);
+        xAxis.setValueFormatter(new TimeAxisValueFormatter(xAxisBase));
 
         lineChart.getAxisLeft().setAxisMinimum(40f);
         lineChart.getAxisLeft().setAxisMaximum(160f);
         lineChart.getAxisLeft().setDrawGridLines(true);
         lineChart.getAxisRight().setEnabled(false);
+
+        lineChart.setOnChartGestureListener(new OnChartGestureListener() {
+            @Override
+            public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            }
+
+            @Override
+            public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+                // Re-pick the downsampled points for the new visible range once the gesture settles
+                if (lineChart.getData() != null) {
+                    if (!renderedSeries.isEmpty()) {
+                        renderDownsampled(lineChart.getLowestVisibleX(), lineChart.getHighestVisibleX());
+                    }
+                    listenToVisibleRange();
+                }
+            }
+
+            @Override
+            public void onChartLongPressed(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartDoubleTapped(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartSingleTapped(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+            }
+
+            @Override
+            public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+                loadOlderIfNearLeftEdge();
+            }
+
+            @Override
+            public void onChartTranslate(MotionEvent me, float dX, float dY) {
+                loadOlderIfNearLeftEdge();
+            }
+        });
+    }
+
+    private void setupRangeChips() {
+        ChipGroup rangeChips = findViewById(R.id.rangeChips);
+        rangeChips.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            if (checkedIds.isEmpty()) return;
+            int chipId = checkedIds.get(0);
+            if (chipId == R.id.rangeCustom) {
+                showCustomRangePicker(group);
+                return;
+            }
+            checkedRangeChipId = chipId;
+            if (chipId == R.id.rangeAll) {
+                showWholeHistory();
+                return;
+            }
+            // Align the end to the next reading window so repeated selections share the cached part
+            long windowMillis = HeartRateReadingWriter.WINDOW.getBucketMillis();
+            long to = HeartRateReadingWriter.WINDOW.bucketStart(System.currentTimeMillis()) + windowMillis;
+            selectRange(to - rangeMillis(chipId), to);
+        });
+    }
+
+    private static long rangeMillis(int chipId) {
+        if (chipId == R.id.rangeHour) {
+            return TimeUnit.HOURS.toMillis(1);
+        } else if (chipId == R.id.rangeDay) {
+            return TimeUnit.DAYS.toMillis(1);
+        } else if (chipId == R.id.rangeWeek) {
+            return TimeUnit.DAYS.toMillis(7);
+        }
+        return TimeUnit.DAYS.toMillis(30);
+    }
+
+    private void showCustomRangePicker(ChipGroup group) {
+        MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                .setTitleText(R.string.range_custom)
+                .build();
+        picker.addOnPositiveButtonClickListener(selection -> {
+            checkedRangeChipId = R.id.rangeCustom;
+            // The picker reports UTC midnights; the range covers the whole local end day
+            selectRange(localStartOfDay(selection.first),
+                    localStartOfDay(selection.second + TimeUnit.DAYS.toMillis(1)));
+        });
+        picker.addOnDismissListener(dialog -> {
+            if (checkedRangeChipId != R.id.rangeCustom) {
+                group.check(checkedRangeChipId);
+            }
+        });
+        picker.show(getSupportFragmentManager(), "range_picker");
+    }
+
+    private static long localStartOfDay(long utcDateMillis) {
+        return Instant.ofEpochMilli(utcDateMillis).atZone(ZoneOffset.UTC).toLocalDate()
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void showWholeHistory() {
+        if (!rangeSelected) return;
+        removeLiveListener();
+        rangeSelected = false;
+        rangeGeneration++;
+        if (overviewSeries.isEmpty()) {
+            showLoading();
+            loadLocalData(false, "No heart rate data available for this user");
+        } else {
+            renderedResolution = overviewResolution;
+            showChart();
+            updateChart(overviewSeries, false);
+        }
     }
 
-    private void loadHeartRateData() {
+    /**
+     * Shows the readings in {@code [from, to)}, querying only the parts of it that are not cached.
+     */
+    private void selectRange(long from, long to) {
+        if (!rangeSelected) {
+            overviewSeries = renderedSeries;
+            overviewResolution = renderedResolution;
+        }
+        removeLiveListener();
+        rangeSelected = true;
+        rangeFrom = from;
+        rangeTo = to;
+        int generation = ++rangeGeneration;
+
+        List<long[]> gaps = rangeCache.missing(from, to);
+        if (gaps.isEmpty()) {
+            showRange(generation);
+            return;
+        }
         showLoading();
+        Log.d("HeartRateHistory", "Range needs " + gaps.size() + " queries, " + rangeCache.getSampleCount() + " samples cached");
+        loadRangeGap(generation, gaps, 0, gaps.get(0)[1]);
+    }
 
-        db.collection("heart_rate_readings")
-                .whereEqualTo("patientEmail", userEmail)
-                .whereEqualTo("pairingCode", pairingCode)
-                .orderBy("timestamp", Query.Direction.ASCENDING)
+    /**
+     * Pages one uncached gap newest first below {@code upperMillis}, caching each page as the interval
+     * it covers, then moves on to the next gap. The recent tail is replicated but never cached, so it
+     * is queried again on every selection.
+     */
+    private void loadRangeGap(int generation, List<long[]> gaps, int gapIndex, long upperMillis) {
+        long gapFrom = gaps.get(gapIndex)[0];
+        readingsQuery()
+                .whereGreaterThanOrEqualTo("timestamp", toTimestamp(gapFrom))
+                .whereLessThan("timestamp", toTimestamp(upperMillis))
+                .limit(RANGE_PAGE_SIZE)
                 .get()
                 .addOnSuccessListener(documents -> {
-                    Log.d("HeartRateHistory", "Successfully loaded " + documents.size() + " documents");
+                    HeartRateSeries page = replicate(documents);
+                    boolean lastPage = documents.size() < RANGE_PAGE_SIZE || page.isEmpty();
+                    long pageFrom = lastPage ? gapFrom : page.firstTimestamp();
+                    rangeCache.put(pageFrom, Math.min(upperMillis, cacheableTo()), page);
+                    if (isDestroyed() || generation != rangeGeneration) return;
 
-                    if (documents.isEmpty()) {
-                        showError("No heart rate data available for this user");
-                        return;
+                    if (!lastPage) {
+                        loadRangeGap(generation, gaps, gapIndex, pageFrom);
+                    } else if (gapIndex + 1 < gaps.size()) {
+                        loadRangeGap(generation, gaps, gapIndex + 1, gaps.get(gapIndex + 1)[1]);
+                    } else {
+                        showRange(generation);
                     }
+                })
+                .addOnFailureListener(exception -> {
+                    if (isDestroyed() || generation != rangeGeneration) return;
+                    // Offline or failing: show what the device has stored for the range
+                    Log.e("HeartRateHistory", "Error loading range", exception);
+                    localStore.loadRange(patientKey, HeartRateLocalStore.READINGS, rangeFrom, rangeTo, series -> showRangeSeries(generation, series));
+                });
+    }
+
+    private static long cacheableTo() {
+        return HeartRateReadingWriter.WINDOW.bucketStart(System.currentTimeMillis() - RANGE_CACHE_LAG_MS);
+    }
+
+    private void showRange(int generation) {
+        HeartRateSeries series = rangeCache.get(rangeFrom, rangeTo);
+        if (series != null) {
+            showRangeSeries(generation, series);
+        } else {
+            // The recent tail is never cached and ranges larger than the cache are trimmed; the local
+            // store has them in full
+            localStore.loadRange(patientKey, HeartRateLocalStore.READINGS, rangeFrom, rangeTo, local -> showRangeSeries(generation, local));
+        }
+    }
+
+    private void showRangeSeries(int generation, HeartRateSeries series) {
+        if (isDestroyed() || generation != rangeGeneration) return;
+        if (series.isEmpty()) {
+            showError(getString(R.string.no_data_in_range));
+            return;
+        }
+        renderedResolution = HeartRateLocalStore.READINGS;
+        showChart();
+        updateChart(series, false);
+    }
+
+    private void loadOlderIfNearLeftEdge() {
+        if (rangeSelected || lineChart.getData() == null) return;
+        float visibleRange = lineChart.getHighestVisibleX() - lineChart.getLowestVisibleX();
+        // Rollups may extend the chart further back; page in readings as the view nears the oldest one
+        float oldestReadingX = renderedSeries.isEmpty() ? lineChart.getXChartMin() : toX(renderedSeries.firstTimestamp());
+        if (lineChart.getLowestVisibleX() <= oldestReadingX + visibleRange * LOAD_MORE_EDGE_FRACTION) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Renders the local window from one resolution only: replicated readings, or raw samples when no
+     * reading has been synced for it yet. The two are never merged into one series.
+     */
+    private void loadLocalData(boolean preserveViewport, String emptyMessage) {
+        localStore.loadRange(patientKey, HeartRateLocalStore.READINGS, windowStart, Long.MAX_VALUE, readings -> {
+            if (!readings.isEmpty()) {
+                showLocalData(readings, HeartRateLocalStore.READINGS, preserveViewport, emptyMessage);
+                return;
+            }
+            localStore.loadRange(patientKey, HeartRateLocalStore.RAW, windowStart, Long.MAX_VALUE, series -> {
+                if (series.isEmpty()) {
+                    // Long histories may only survive in the compressed archive, e.g. after a store upgrade
+                    archives.loadRange(patientKey, windowStart, Long.MAX_VALUE,
+                            archived -> showLocalData(archived, HeartRateLocalStore.RAW, preserveViewport, emptyMessage));
+                } else {
+                    showLocalData(series, HeartRateLocalStore.RAW, preserveViewport, emptyMessage);
+                }
+            });
+        });
+    }
+
+    private void showLocalData(HeartRateSeries series, String resolution, boolean preserveViewport, String emptyMessage) {
+        if (isDestroyed()) return;
+        if (series.isEmpty()) {
+            if (emptyMessage != null && !hasLocalData && !rangeSelected && rollupSeries.isEmpty()) {
+                showError(emptyMessage);
+            }
+            return;
+        }
+        hasLocalData = true;
+        if (rangeSelected) {
+            overviewSeries = series;
+            overviewResolution = resolution;
+            return;
+        }
+        renderedResolution = resolution;
+        showChart();
+        updateChart(series, preserveViewport);
+    }
+
+    /**
+     * Pulls the packed raw samples of the initial window into the local store when the patient has no
+     * readings at all, so samples recorded on another device or before a reinstall still show up.
+     */
+    private void loadRecentMeasurements() {
+        long now = System.currentTimeMillis();
+        new PackedMeasurementReader(db).loadRange(patientKey, now - INITIAL_LOCAL_WINDOW_MS, now + 1)
+                .addOnSuccessListener(series -> {
+                    if (series.isEmpty() || isDestroyed()) return;
+                    localStore.insertSeries(patientKey, HeartRateLocalStore.RAW, series, true);
+                    loadLocalData(hasLocalData, null);
+                })
+                .addOnFailureListener(e -> Log.w("HeartRateHistory", "Could not load packed measurements", e));
+    }
 
-                    List<Entry> entries = new ArrayList<>();
-                    List<String> dates = new ArrayList<>();
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd HH:mm", Locale.getDefault());
-
-                    int index = 0;
-                    for (DocumentSnapshot document : documents) {
-                        try {
-                            Timestamp timestamp = document.getTimestamp("timestamp");
-                            Double heartRateDouble = document.getDouble("averageHeartRate");
-                            Long heartRateLong = document.getLong("averageHeartRate");
-
-                            Float heartRate = heartRateDouble != null ? heartRateDouble.floatValue() :
-                                    (heartRateLong != null ? heartRateLong.floatValue() : null);
-
-                            if (timestamp != null && heartRate != null) {
-                                Date date = timestamp.toDate();
-                                entries.add(new Entry(index, heartRate));
-                                dates.add(dateFormat.format(date));
-                                index++;
-                            } else {
-                                Log.w("HeartRateHistory", "Document " + document.getId() + " has missing or invalid data");
-                            }
-                        } catch (Exception e) {
-                            Log.e("HeartRateHistory", "Error processing document " + document.getId(), e);
-                        }
+    /**
+     * Outlines the history older than the synced readings with the coarsest rollup resolution that
+     * still fills the chart. Rollups never replace readings: they are clipped to the span before the
+     * oldest rendered reading and disappear as paging reaches back over them.
+     */
+    private void loadRollupOverview() {
+        Timestamp localFrom = toTimestamp(syncState.hasSynced() ? syncState.getOldest() : System.currentTimeMillis());
+        db.collection(HeartRateRollupWriter.COLLECTION)
+                .whereEqualTo("patientId", patientKey)
+                .whereEqualTo("resolution", RollupResolution.DAY.getId())
+                .whereLessThan("bucketStart", localFrom)
+                .orderBy("bucketStart", Query.Direction.ASCENDING)
+                .get()
+                .addOnSuccessListener(days -> {
+                    Timestamp firstBucket = days.isEmpty() ? null : days.getDocuments().get(0).getTimestamp("bucketStart");
+                    if (firstBucket == null) return;
+
+                    long spanMillis = localFrom.toDate().getTime() - firstBucket.toDate().getTime();
+                    RollupResolution resolution = RollupResolution.pick(spanMillis, ROLLUP_TARGET_POINTS);
+                    if (resolution == null) {
+                        // Too short to need an outline; paging fills it with readings
+                        return;
+                    } else if (resolution == RollupResolution.DAY) {
+                        renderRollups(days);
+                        return;
                     }
+                    Log.d("HeartRateHistory", "Using " + resolution.getId() + " rollups for " + spanMillis + " ms of history");
+                    db.collection(HeartRateRollupWriter.COLLECTION)
+                            .whereEqualTo("patientId", patientKey)
+                            .whereEqualTo("resolution", resolution.getId())
+                            .whereGreaterThanOrEqualTo("bucketStart", firstBucket)
+                            .whereLessThan("bucketStart", localFrom)
+                            .orderBy("bucketStart", Query.Direction.ASCENDING)
+                            .get()
+                            .addOnSuccessListener(this::renderRollups)
+                            .addOnFailureListener(e -> Log.e("HeartRateHistory", "Error loading rollups", e));
+                })
+                .addOnFailureListener(e -> Log.e("HeartRateHistory", "Error loading day rollups", e));
+    }
 
-                    if (!entries.isEmpty()) {
-                        showChart();
-                        updateChart(entries, dates);
-                    } else {
-                        showError("No valid heart rate data found");
+    private void renderRollups(QuerySnapshot buckets) {
+        long[] timestamps = new long[buckets.size()];
+        float[] values = new float[buckets.size()];
+        int count = 0;
+        for (DocumentSnapshot bucket : buckets) {
+            Timestamp bucketStart = bucket.getTimestamp("bucketStart");
+            Double sum = bucket.getDouble("sum");
+            Long samples = bucket.getLong("count");
+            if (bucketStart != null && sum != null && samples != null && samples > 0) {
+                timestamps[count] = bucketStart.toDate().getTime();
+                values[count] = (float) (sum / samples);
+                count++;
+            }
+        }
+        if (count == 0 || isDestroyed()) return;
+
+        rollupSeries = new HeartRateSeries(timestamps, values, count);
+        if (rangeSelected) return;
+        showChart();
+        updateChart(renderedSeries, lineChart.getData() != null);
+    }
+
+    private Query patientReadings() {
+        return db.collection(HeartRateReadingWriter.COLLECTION)
+                .whereEqualTo("patientEmail", userEmail)
+                .whereEqualTo("pairingCode", pairingCode)
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+    }
+
+    private Query readingsQuery() {
+        return patientReadings().limit(PAGE_SIZE);
+    }
+
+    /**
+     * Loads the next slice of remote readings into the local store and re-renders from it. The first
+     * call after a previous sync fetches only readings newer than the watermark; later calls page
+     * backwards from the oldest synced reading.
+     */
+    private void loadNextPage() {
+        if (isLoadingPage) return;
+        if (!deltaSynced && syncState.hasSynced()) {
+            isLoadingPage = true;
+            syncNewerReadings(null, Long.MIN_VALUE, 0);
+            return;
+        }
+        if (!hasMorePages) return;
+        isLoadingPage = true;
+
+        Query query = readingsQuery();
+        if (syncState.hasSynced()) {
+            query = query.whereLessThan("timestamp", toTimestamp(syncState.getOldest()));
+        }
+        boolean isFirstPage = isFirstRemoteLoad;
+        isFirstRemoteLoad = false;
+
+        query.get()
+                .addOnSuccessListener(documents -> {
+                    isLoadingPage = false;
+                    deltaSynced = true;
+                    Log.d("HeartRateHistory", "Successfully loaded page of " + documents.size() + " documents");
+
+                    HeartRateSeries page = replicate(documents);
+                    if (!page.isEmpty()) {
+                        syncState.include(page.firstTimestamp(), page.lastTimestamp());
+                        windowStart = Math.min(windowStart, page.firstTimestamp());
+                    } else if (isFirstPage && patientDocId != null) {
+                        loadRecentMeasurements();
+                    }
+                    if (documents.size() < PAGE_SIZE) {
+                        // Last remote page: also reveal any older samples that only exist locally. With
+                        // nothing synced the state stays incomplete, so the next open pages from the newest again
+                        hasMorePages = false;
+                        windowStart = 0;
+                        syncState.markComplete();
                     }
+                    syncState.save(this);
+                    loadLocalData(!isFirstPage, isFirstPage ? "No heart rate data available for this user" : null);
                 })
-                .addOnFailureListener(exception -> {
-                    Log.e("HeartRateHistory", "Error loading data", exception);
-                    showError("Failed to load data: " + exception.getMessage());
+                .addOnFailureListener(exception -> showLoadFailure(exception, isFirstPage));
+    }
+
+    /**
+     * Fetches readings at or after the watermark, newest first, a page at a time below {@code before}.
+     * The watermark reading itself is re-read because the live averager may still have been updating
+     * that window when it was synced. The watermark only advances once the whole gap is local.
+     */
+    private void syncNewerReadings(Timestamp before, long newestSeen, int fetched) {
+        Query query = readingsQuery().whereGreaterThanOrEqualTo("timestamp", toTimestamp(syncState.getNewest()));
+        if (before != null) {
+            query = query.whereLessThan("timestamp", before);
+        }
+        boolean isFirstPage = isFirstRemoteLoad;
+        isFirstRemoteLoad = false;
+
+        query.get()
+                .addOnSuccessListener(documents -> {
+                    HeartRateSeries page = replicate(documents);
+                    long newest = page.isEmpty() ? newestSeen : Math.max(newestSeen, page.lastTimestamp());
+                    if (documents.size() == PAGE_SIZE && !page.isEmpty()) {
+                        syncNewerReadings(toTimestamp(page.firstTimestamp()), newest, fetched + documents.size());
+                        return;
+                    }
 
-                    if (exception.getMessage() != null && exception.getMessage().contains("index")) {
-                        showError("Firestore index required. Please create this index:\n" +
-                                "Collection: heart_rate_readings\nFields: \n1. patientEmail (ASC)\n2. pairingCode (ASC)\n3. timestamp (ASC)");
+                    isLoadingPage = false;
+                    deltaSynced = true;
+                    Log.d("HeartRateHistory", "Delta sync fetched " + (fetched + documents.size()) + " readings");
+                    if (newest != Long.MIN_VALUE) {
+                        syncState.include(syncState.getOldest(), newest);
+                        syncState.save(this);
                     }
+                    loadLocalData(!isFirstPage, isFirstPage ? "No heart rate data available for this user" : null);
+                })
+                .addOnFailureListener(exception -> {
+                    // Render what is cached; the next open retries from the same watermark
+                    deltaSynced = true;
+                    showLoadFailure(exception, isFirstPage);
                 });
     }
 
-    private void updateChart(List<Entry> entries, List<String> dates) {
+    /**
+     * Copies a page of readings into the local store as synced and returns them in time order.
+     */
+    private HeartRateSeries replicate(QuerySnapshot documents) {
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(documents.size());
+        // Pages arrive newest first
+        for (int i = documents.size() - 1; i >= 0; i--) {
+            DocumentSnapshot document = documents.getDocuments().get(i);
+            Timestamp timestamp = document.getTimestamp("timestamp");
+            if (!builder.addRaw(timestamp != null ? timestamp.toDate() : null, document.get("averageHeartRate"))) {
+                Log.w("HeartRateHistory", "Document " + document.getId() + " has missing or invalid data");
+            }
+        }
+        HeartRateSeries series = builder.build();
+        if (!series.isEmpty()) {
+            localStore.insertSeries(patientKey, HeartRateLocalStore.READINGS, series, true);
+        }
+        return series;
+    }
+
+    private void showLoadFailure(Exception exception, boolean isFirstPage) {
+        isLoadingPage = false;
+        Log.e("HeartRateHistory", "Error loading data", exception);
+
+        // Offline or failing: fall back to everything stored on the device
+        windowStart = 0;
+        String message = "Failed to load data: " + exception.getMessage();
+        if (exception.getMessage() != null && exception.getMessage().contains("index")) {
+            message = "Firestore index required. Please create this index:\n" +
+                    "Collection: heart_rate_readings\nFields: \n1. patientEmail (ASC)\n2. pairingCode (ASC)\n3. timestamp (DESC)";
+        }
+        loadLocalData(!isFirstPage, isFirstPage ? message : null);
+    }
+
+    private static Timestamp toTimestamp(long millis) {
+        return new Timestamp(new Date(millis));
+    }
+
+    /**
+     * Subscribes to the readings around the visible range, half a viewport wider on each side. In the
+     * whole-history view the newest readings have their own open-ended listener, so the visible scope
+     * stops where that one starts. Moving within the current scope keeps the existing listener.
+     */
+    private void listenToVisibleRange() {
+        if (rangeSelected) {
+            removeNewestListener();
+        } else {
+            listenToNewestReadings();
+        }
+        if (seriesEditor == null || lineChart.getData() == null || renderedSeries.isEmpty()) {
+            removeVisibleListener();
+            return;
+        }
+
+        long visibleFrom = TimeAxisValueFormatter.toTimestamp(lineChart.getLowestVisibleX(), xAxisBase);
+        long visibleTo = TimeAxisValueFormatter.toTimestamp(lineChart.getHighestVisibleX(), xAxisBase) + 1;
+        long margin = (visibleTo - visibleFrom) / 2;
+        long from = Math.max(0, visibleFrom - margin);
+        long to = visibleTo + margin;
+        if (rangeSelected) {
+            from = Math.max(from, rangeFrom);
+            to = Math.min(to, rangeTo);
+        } else {
+            visibleTo = Math.min(visibleTo, newestFrom);
+            to = Math.min(to, newestFrom);
+        }
+        if (visibleFrom >= visibleTo || from >= to) {
+            removeVisibleListener();
+            return;
+        }
+        if (liveRegistration != null && visibleFrom >= liveFrom && visibleTo <= liveTo) return;
+
+        removeVisibleListener();
+        liveFrom = from;
+        liveTo = to;
+        liveRegistration = patientReadings()
+                .whereGreaterThanOrEqualTo("timestamp", toTimestamp(from))
+                .whereLessThan("timestamp", toTimestamp(to))
+                .addSnapshotListener(this::onLiveReadings);
+    }
+
+    /**
+     * Keeps the whole-history view subscribed to readings from the newest rendered one, or the window
+     * before the current one, onwards. It stays attached while the chart shows only the rollup outline
+     * or nothing yet; older readings arrive through the delta sync.
+     */
+    private void listenToNewestReadings() {
+        if (newestRegistration != null || syncState == null) return;
+        RollupResolution window = HeartRateReadingWriter.WINDOW;
+        newestFrom = window.bucketStart(System.currentTimeMillis()) - window.getBucketMillis();
+        if (HeartRateLocalStore.READINGS.equals(renderedResolution) && !renderedSeries.isEmpty()) {
+            newestFrom = Math.min(newestFrom, renderedSeries.lastTimestamp());
+        }
+        newestRegistration = patientReadings()
+                .whereGreaterThanOrEqualTo("timestamp", toTimestamp(newestFrom))
+                .addSnapshotListener(this::onLiveReadings);
+    }
+
+    private void onLiveReadings(QuerySnapshot snapshot, FirebaseFirestoreException e) {
+        if (e != null) {
+            Log.e("HeartRateHistory", "Live readings listener error", e);
+            return;
+        }
+        applyReadingChanges(snapshot);
+    }
+
+    private void removeLiveListener() {
+        removeVisibleListener();
+        removeNewestListener();
+    }
+
+    private void removeVisibleListener() {
+        if (liveRegistration != null) {
+            liveRegistration.remove();
+            liveRegistration = null;
+        }
+    }
+
+    private void removeNewestListener() {
+        if (newestRegistration != null) {
+            newestRegistration.remove();
+            newestRegistration = null;
+        }
+    }
+
+    /**
+     * Applies added, modified and removed readings to the rendered series and to the chart's data set
+     * entry by entry. Samples the downsampler left out only change the series; they show up when the
+     * next gesture re-picks the points. Changes are also copied to the local store, and to the range
+     * cache only where it already holds the loaded range around them.
+     */
+    private void applyReadingChanges(QuerySnapshot snapshot) {
+        LineData data = lineChart.getData();
+        if (seriesEditor == null || data == null || data.getDataSetCount() == 0
+                || !HeartRateLocalStore.READINGS.equals(renderedResolution)) {
+            // No readings or raw samples on screen; store the readings and switch over whole rather than mix them in
+            if (!snapshot.getDocumentChanges().isEmpty()) {
+                replicate(snapshot);
+                loadLocalData(true, null);
+            }
+            return;
+        }
+        LineDataSet dataSet = (LineDataSet) data.getDataSetByIndex(0);
+        float visibleRange = lineChart.getHighestVisibleX() - lineChart.getLowestVisibleX();
+        boolean followLatest = lineChart.getHighestVisibleX() >= lineChart.getXChartMax();
+
+        int applied = 0;
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            DocumentSnapshot document = change.getDocument();
+            Timestamp timestamp = document.getTimestamp("timestamp");
+            if (timestamp == null) continue;
+            long timestampMillis = timestamp.toDate().getTime();
+            float x = toX(timestampMillis);
+            Entry entry = dataSet.getEntryForXValue(x, Float.NaN);
+            if (entry != null && entry.getX() != x) {
+                entry = null;
+            }
+
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                if (!seriesEditor.remove(timestampMillis)) continue;
+                if (entry != null) {
+                    dataSet.removeEntry(entry);
+                }
+                localStore.deleteSample(patientKey, HeartRateLocalStore.READINGS, timestampMillis);
+                rangeCache.remove(timestampMillis);
+            } else {
+                float bpm = HeartRateSampleParser.parseBpm(document.get("averageHeartRate"));
+                if (Float.isNaN(bpm)) continue;
+                boolean existed = seriesEditor.indexOf(timestampMillis) >= 0;
+                if (!seriesEditor.put(timestampMillis, bpm)) continue;
+                if (entry != null) {
+                    entry.setY(bpm);
+                } else if (!existed) {
+                    dataSet.addEntryOrdered(new Entry(x, bpm));
+                }
+                localStore.insertSample(patientKey, HeartRateLocalStore.READINGS, timestampMillis, bpm, true);
+                rangeCache.update(timestampMillis, bpm);
+            }
+            applied++;
+        }
+        if (applied == 0) return;
+
+        Log.d("HeartRateHistory", "Applied " + applied + " live reading changes");
+        renderedSeries = seriesEditor.view();
+        if (renderedSeries.isEmpty() && (rangeSelected || rollupSeries.isEmpty())) {
+            showError(getString(R.string.No_data_available));
+            return;
+        }
+        if (lineChart.getVisibility() != View.VISIBLE) {
+            showChart();
+        }
+        dataSet.notifyDataSetChanged();
+        data.notifyDataChanged();
+        lineChart.notifyDataSetChanged();
+        if (followLatest) {
+            lineChart.moveViewToX(lineChart.getXChartMax() - visibleRange);
+        }
+        lineChart.invalidate();
+    }
+
+    private void updateChart(HeartRateSeries series, boolean preserveViewport) {
+        boolean keepViewport = preserveViewport && lineChart.getData() != null;
+        float lowestVisibleX = keepViewport || series.isEmpty() ? lineChart.getLowestVisibleX() : toX(series.firstTimestamp());
+        float highestVisibleX = keepViewport || series.isEmpty() ? lineChart.getHighestVisibleX() : toX(series.lastTimestamp());
+        seriesEditor = new HeartRateSeriesEditor(series);
+        renderedSeries = seriesEditor.view();
+
+        renderDownsampled(lowestVisibleX, highestVisibleX);
+        if (keepViewport) {
+            // X values are absolute times, so prepending older samples does not move what is on screen
+            lineChart.moveViewToX(lowestVisibleX);
+        } else {
+            lineChart.fitScreen();
+        }
+        listenToVisibleRange();
+    }
+
+    private float toX(long timestampMillis) {
+        return TimeAxisValueFormatter.toX(timestampMillis, xAxisBase);
+    }
+
+    /**
+     * Replaces the chart data with an LTTB-reduced copy of {@link #renderedSeries}: roughly one point per
+     * pixel across the visible time range, plus a coarse overview of the rest so panning stays smooth.
+     * Rollup buckets older than the first reading follow as a second data set; the readings stay first
+     * so live changes can address them.
+     */
+    private void renderDownsampled(float lowestVisibleX, float highestVisibleX) {
+        HeartRateSeries series = renderedSeries;
+        int size = series.size();
+        int threshold = Math.max(MIN_DOWNSAMPLE_POINTS, getChartPixelWidth());
+        if (overviewIndices.length < threshold) {
+            overviewIndices = new int[threshold];
+            visibleIndices = new int[threshold];
+        }
+
+        // One sample beyond each edge keeps the line running off-screen instead of stopping short
+        int visibleFrom = Math.max(0, series.indexAtOrAfter(TimeAxisValueFormatter.toTimestamp(lowestVisibleX, xAxisBase)) - 1);
+        int visibleTo = Math.min(size, series.indexAtOrAfter(TimeAxisValueFormatter.toTimestamp(highestVisibleX, xAxisBase) + 1) + 1);
+        if (visibleFrom >= visibleTo) {
+            visibleFrom = 0;
+            visibleTo = size;
+        }
+
+        int overviewCount = Downsampler.lttb(series, 0, size, threshold, overviewIndices);
+        int visibleCount = Downsampler.lttb(series, visibleFrom, visibleTo, threshold, visibleIndices);
+
+        // Overview points left of the visible range, full detail inside it, overview points to the right
+        List<Entry> entries = new ArrayList<>(overviewCount + visibleCount);
+        int i = 0;
+        while (i < overviewCount && overviewIndices[i] < visibleFrom) {
+            entries.add(new Entry(toX(series.timestampAt(overviewIndices[i])), series.valueAt(overviewIndices[i])));
+            i++;
+        }
+        for (int j = 0; j < visibleCount; j++) {
+            entries.add(new Entry(toX(series.timestampAt(visibleIndices[j])), series.valueAt(visibleIndices[j])));
+        }
+        while (i < overviewCount) {
+            if (overviewIndices[i] >= visibleTo) {
+                entries.add(new Entry(toX(series.timestampAt(overviewIndices[i])), series.valueAt(overviewIndices[i])));
+            }
+            i++;
+        }
+
+        boolean reduced = entries.size() < size;
         LineDataSet dataSet = new LineDataSet(entries, "Heart Rate (BPM)");
         dataSet.setColor(Color.RED);
         dataSet.setCircleColor(Color.RED);
@@ -145,12 +880,40 @@ public class HeartRateHistoryActivity extends AppCompatActivity {
         dataSet.setCircleRadius(4f);
         dataSet.setDrawCircleHole(false);
         dataSet.setValueTextSize(10f);
-        dataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
+        // Circles, value labels and bezier smoothing only pay off for short series
+        dataSet.setDrawCircles(entries.size() <= MAX_DECORATED_POINTS);
+        dataSet.setDrawValues(entries.size() <= MAX_DECORATED_POINTS);
+        dataSet.setMode(reduced ? LineDataSet.Mode.LINEAR : LineDataSet.Mode.CUBIC_BEZIER);
 
-        lineChart.getXAxis().setValueFormatter(new IndexAxisValueFormatter(dates));
-        lineChart.setData(new LineData(dataSet));
+        LineData data = new LineData(dataSet);
+        LineDataSet rollupDataSet = rollupDataSet(series.isEmpty() ? Long.MAX_VALUE : series.firstTimestamp());
+        if (rollupDataSet != null) {
+            data.addDataSet(rollupDataSet);
+        }
+        lineChart.setData(data);
         lineChart.invalidate();
-        lineChart.fitScreen();
+    }
+
+    private LineDataSet rollupDataSet(long beforeMillis) {
+        if (rangeSelected || rollupSeries.isEmpty()) return null;
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < rollupSeries.size() && rollupSeries.timestampAt(i) < beforeMillis; i++) {
+            entries.add(new Entry(toX(rollupSeries.timestampAt(i)), rollupSeries.valueAt(i)));
+        }
+        if (entries.isEmpty()) return null;
+
+        LineDataSet dataSet = new LineDataSet(entries, "Average Heart Rate (BPM)");
+        dataSet.setColor(Color.GRAY);
+        dataSet.setLineWidth(1.5f);
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+        dataSet.setHighlightEnabled(false);
+        return dataSet;
+    }
+
+    private int getChartPixelWidth() {
+        int width = (int) lineChart.getViewPortHandler().contentWidth();
+        return width > 0 ? width : getResources().getDisplayMetrics().widthPixels;
     }
 
     private void showLoading() {
@@ -163,6 +926,7 @@ public class HeartRateHistoryActivity extends AppCompatActivity {
         progressBar.setVisibility(View.GONE);
         lineChart.setVisibility(View.VISIBLE);
         errorText.setVisibility(View.GONE);
+        reportFullyDrawn();
     }
 
     private void showError(String message) {
@@ -170,5 +934,6 @@ public class HeartRateHistoryActivity extends AppCompatActivity {
         lineChart.setVisibility(View.GONE);
         errorText.setVisibility(View.VISIBLE);
         errorText.setText(message);
+        reportFullyDrawn();
     }
 }
@@ -0,0 +1,191 @@
+package com.example.health;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device time-series store of heart-rate samples keyed by (patientId, resolution, timestamp).
+ * Raw watch samples ({@link #RAW}) and replicated {@code heart_rate_readings} window averages
+ * ({@link #READINGS}) are kept apart, and every read returns a single resolution.
+ * All database work runs on a single background thread; results are delivered on the main thread.
+ */
+public class HeartRateLocalStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "HeartRateLocalStore";
+    private static final String DATABASE_NAME = "heart_rate.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String RAW = "raw";
+    public static final String READINGS = "readings";
+
+    static final String TABLE_SAMPLES = "samples";
+    static final String COL_PATIENT_ID = "patient_id";
+    static final String COL_RESOLUTION = "resolution";
+    static final String COL_TIMESTAMP = "timestamp";
+    static final String COL_BPM = "bpm";
+    static final String COL_SYNCED = "synced";
+
+    public interface SeriesCallback {
+        void onLoaded(HeartRateSeries series);
+    }
+
+    private static HeartRateLocalStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized HeartRateLocalStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new HeartRateLocalStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private HeartRateLocalStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SAMPLES + " ("
+                + COL_PATIENT_ID + " TEXT NOT NULL, "
+                + COL_RESOLUTION + " TEXT NOT NULL, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL, "
+                + COL_BPM + " REAL NOT NULL, "
+                + COL_SYNCED + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + COL_PATIENT_ID + ", " + COL_RESOLUTION + ", " + COL_TIMESTAMP + ")) WITHOUT ROWID");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SAMPLES);
+        onCreate(db);
+    }
+
+    public void insertSample(String patientId, String resolution, long timestamp, float bpm, boolean synced) {
+        executor.execute(() -> {
+            try {
+                ContentValues values = new ContentValues();
+                values.put(COL_PATIENT_ID, patientId);
+                values.put(COL_RESOLUTION, resolution);
+                values.put(COL_TIMESTAMP, timestamp);
+                values.put(COL_BPM, bpm);
+                values.put(COL_SYNCED, synced ? 1 : 0);
+                getWritableDatabase().insertWithOnConflict(TABLE_SAMPLES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            } catch (Exception e) {
+                Log.e(TAG, "Insert failed", e);
+            }
+        });
+    }
+
+    public void deleteSample(String patientId, String resolution, long timestamp) {
+        executor.execute(() -> {
+            try {
+                getWritableDatabase().delete(TABLE_SAMPLES, COL_PATIENT_ID + " = ? AND " + COL_RESOLUTION + " = ? AND "
+                                + COL_TIMESTAMP + " = ?",
+                        new String[]{patientId, resolution, String.valueOf(timestamp)});
+            } catch (Exception e) {
+                Log.e(TAG, "Delete failed", e);
+            }
+        });
+    }
+
+    public void insertSeries(String patientId, String resolution, HeartRateSeries series, boolean synced) {
+        if (series.isEmpty()) return;
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SQLiteStatement statement = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_SAMPLES
+                        + " (" + COL_PATIENT_ID + ", " + COL_RESOLUTION + ", " + COL_TIMESTAMP + ", " + COL_BPM + ", "
+                        + COL_SYNCED + ") VALUES (?, ?, ?, ?, ?)");
+                for (int i = 0; i < series.size(); i++) {
+                    statement.bindString(1, patientId);
+                    statement.bindString(2, resolution);
+                    statement.bindLong(3, series.timestampAt(i));
+                    statement.bindDouble(4, series.valueAt(i));
+                    statement.bindLong(5, synced ? 1 : 0);
+                    statement.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Bulk insert failed", e);
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Marks raw samples as uploaded; readings are only ever stored already synced.
+     */
+    public void markSynced(String patientId, long[] timestamps) {
+        if (timestamps.length == 0) return;
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_SAMPLES + " SET " + COL_SYNCED
+                        + " = 1 WHERE " + COL_PATIENT_ID + " = ? AND " + COL_RESOLUTION + " = '" + RAW + "' AND "
+                        + COL_TIMESTAMP + " = ?");
+                for (long timestamp : timestamps) {
+                    statement.bindString(1, patientId);
+                    statement.bindLong(2, timestamp);
+                    statement.executeUpdateDelete();
+                }
+                db.setTransactionSuccessful();
+            } catch (Exception e) {
+                Log.e(TAG, "Mark synced failed", e);
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    public void loadRange(String patientId, String resolution, long fromInclusive, long toExclusive, SeriesCallback callback) {
+        query("SELECT " + COL_TIMESTAMP + ", " + COL_BPM + " FROM " + TABLE_SAMPLES
+                        + " WHERE " + COL_PATIENT_ID + " = ? AND " + COL_RESOLUTION + " = ? AND " + COL_TIMESTAMP + " >= ? AND "
+                        + COL_TIMESTAMP + " < ? ORDER BY " + COL_TIMESTAMP + " ASC",
+                new String[]{patientId, resolution, String.valueOf(fromInclusive), String.valueOf(toExclusive)}, callback);
+    }
+
+    public void loadUnsynced(String patientId, SeriesCallback callback) {
+        query("SELECT " + COL_TIMESTAMP + ", " + COL_BPM + " FROM " + TABLE_SAMPLES
+                        + " WHERE " + COL_PATIENT_ID + " = ? AND " + COL_RESOLUTION + " = '" + RAW + "' AND "
+                        + COL_SYNCED + " = 0 ORDER BY " + COL_TIMESTAMP + " ASC",
+                new String[]{patientId}, callback);
+    }
+
+    private void query(String sql, String[] args, SeriesCallback callback) {
+        executor.execute(() -> {
+            HeartRateSeries series = HeartRateSeries.EMPTY;
+            try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+                int count = cursor.getCount();
+                long[] timestamps = new long[count];
+                float[] values = new float[count];
+                int size = 0;
+                while (cursor.moveToNext()) {
+                    timestamps[size] = cursor.getLong(0);
+                    values[size] = cursor.getFloat(1);
+                    size++;
+                }
+                series = new HeartRateSeries(timestamps, values, size);
+            } catch (Exception e) {
+                Log.e(TAG, "Query failed", e);
+            }
+            HeartRateSeries result = series;
+            mainHandler.post(() -> callback.onLoaded(result));
+        });
+    }
+}
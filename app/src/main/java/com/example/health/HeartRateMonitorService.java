@@ -0,0 +1,529 @@
+package com.example.health;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns a heart-rate session: the wearDevices snapshot listener, the start/stop command channel and
+ * the persistence pipeline. Activities bind to it for display only, so rotating or leaving the screen
+ * does not restart the session. While measuring it runs in the foreground as a data sync service,
+ * since samples arrive through Firestore rather than a direct link to the watch; when idle it stops
+ * itself shortly after the last client unbinds.
+ */
+public class HeartRateMonitorService extends Service {
+
+    private static final String TAG = "HeartRateMonitorService";
+    private static final String CHANNEL_ID = "heart_rate_monitoring";
+    private static final int NOTIFICATION_ID = 1001;
+    // Lets a configuration change rebind before an idle service is torn down
+    private static final long IDLE_SHUTDOWN_DELAY_MS = 5000L;
+
+    private static final long SPARKLINE_WINDOW_MS = TimeUnit.MINUTES.toMillis(10);
+    // Room for a 2 Hz stream over the whole window
+    private static final int SPARKLINE_CAPACITY = (int) (SPARKLINE_WINDOW_MS / 500);
+    private static final long DROPOUT_CHECK_INTERVAL_MS = 10_000L;
+    private static final long METRICS_DUMP_INTERVAL_MS = 60_000L;
+    private static final String DEVICES_COLLECTION = "wearDevices";
+    // Fields a watch rewrites with every sample; any other change is a status, ack or command update
+    private static final String[] SAMPLE_FIELDS = {"heartRate", "sampleTimestamp", "sampleSequence", "lastUpdated"};
+    static final String ACTION_END_SESSION = "com.example.health.action.END_SESSION";
+
+    public interface Listener {
+        void onHeartRate(long timestamp, int heartRate);
+
+        void onMeasuringChanged(boolean measuring);
+
+        void onCommandFailed();
+
+        void onAnomaly(AnomalyEvent event);
+    }
+
+    public class LocalBinder extends Binder {
+        public HeartRateMonitorService getService() {
+            return HeartRateMonitorService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable idleShutdown = this::stopSelf;
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final SampleChangeDetector changeDetector = new SampleChangeDetector();
+    private final HeartRateRingBuffer recentSamples = new HeartRateRingBuffer(SPARKLINE_CAPACITY, SPARKLINE_WINDOW_MS);
+    private final AnomalyDetector anomalyDetector = new AnomalyDetector(this::onAnomaly);
+    private final Runnable dropoutCheck = new Runnable() {
+        @Override
+        public void run() {
+            // Sample timestamps come from the watch clock; small skew only shifts dropout detection slightly
+            anomalyDetector.onTick(System.currentTimeMillis());
+            handler.postDelayed(this, DROPOUT_CHECK_INTERVAL_MS);
+        }
+    };
+    private final Runnable metricsDump = new Runnable() {
+        @Override
+        public void run() {
+            metrics.dump();
+            handler.postDelayed(this, METRICS_DUMP_INTERVAL_MS);
+        }
+    };
+
+    private HeartRateLocalStore localStore;
+    private HeartRateArchives archives;
+    private MeasurementSink measurementSink;
+    private HeartRateRollupWriter rollupWriter;
+    private HeartRateReadingWriter readingWriter;
+    private PackedMeasurementWriter packedWriter;
+    private AnomalyAlertWriter alertWriter;
+    private PipelineMetrics metrics;
+    private PendingWriteQueue retryQueue;
+    private final PendingWriteQueue.OnWritesCommittedListener journalListener = (collection, documents) -> {
+        if (PackedMeasurementWriter.COLLECTION.equals(collection)) {
+            markSamplesSynced(documents);
+        }
+    };
+    private ListenerRegistration deviceRegistration;
+    private WearCommandChannel commandChannel;
+
+    private String wearDeviceId;
+    private String patientDocId;
+    private String userEmail;
+    private boolean isMeasuring = false;
+    private Integer lastHeartRate;
+    // Onsets that have not resolved yet, one per type since conditions can overlap
+    private final Map<AnomalyEvent.Type, AnomalyEvent> openAnomalies = new EnumMap<>(AnomalyEvent.Type.class);
+    // elapsedRealtime of the last start request, until the first sample after it arrives
+    private long startCommandSentAt = -1;
+    private long lastPersistedTimestamp;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        localStore = HeartRateLocalStore.getInstance(this);
+        archives = HeartRateArchives.getInstance(this);
+        metrics = PipelineMetrics.getInstance(this);
+        handler.postDelayed(metricsDump, METRICS_DUMP_INTERVAL_MS);
+        retryQueue = PendingWriteQueue.getInstance(this);
+        retryQueue.addListener(journalListener);
+        measurementSink = new MeasurementSink(db, PackedMeasurementWriter.COLLECTION);
+        measurementSink.setRetryQueue(retryQueue);
+        measurementSink.setOnBatchCommittedListener(buckets -> {
+            metrics.record(PipelineMetrics.PERSIST_COMMIT, measurementSink.getLastFlushLatencyMs());
+            markSamplesSynced(buckets);
+        });
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_END_SESSION.equals(intent.getAction())) {
+            stopMeasurement();
+            tearDownSession();
+            // Destroyed once the remaining clients unbind
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        // Sessions are driven through the binder; a restart without a bound client has nothing to do
+        if (!isMeasuring && listeners.isEmpty()) {
+            handler.postDelayed(idleShutdown, IDLE_SHUTDOWN_DELAY_MS);
+        }
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Data sync foreground services run for at most six hours a day from Android 15; a measurement
+     * still running then is stopped rather than left in the background.
+     */
+    @Override
+    public void onTimeout(int startId, int fgsType) {
+        Log.w(TAG, "Foreground time limit reached, stopping the measurement");
+        stopMeasurement();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        handler.removeCallbacks(idleShutdown);
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        handler.removeCallbacks(idleShutdown);
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        if (!isMeasuring) {
+            handler.postDelayed(idleShutdown, IDLE_SHUTDOWN_DELAY_MS);
+        }
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacksAndMessages(null);
+        retryQueue.removeListener(journalListener);
+        if (deviceRegistration != null) {
+            deviceRegistration.remove();
+        }
+        if (commandChannel != null) {
+            commandChannel.flush();
+        }
+        if (rollupWriter != null) {
+            rollupWriter.flush();
+            readingWriter.flush();
+            archives.flush(patientDocId);
+        }
+        measurementSink.flush();
+        metrics.dump();
+        Log.d(TAG, "Sink stats: " + measurementSink.getBatchesSent() + " batches, "
+                + measurementSink.getAverageSamplesPerBatch() + " samples/batch, "
+                + measurementSink.getAverageFlushLatencyMs() + " ms avg flush");
+        Log.d(TAG, "Change detection: " + changeDetector.getAcceptedCount() + " samples accepted, "
+                + changeDetector.getDuplicateCount() + " duplicates and "
+                + changeDetector.getPendingWriteCount() + " local echoes suppressed");
+    }
+
+    /**
+     * Attaches the service to a patient's wear device. Calling it again for the same device is a no-op,
+     * so rebinding clients never re-subscribe.
+     */
+    public void startSession(String userEmail, String pairingCode, String wearDeviceId, String patientDocId) {
+        if (wearDeviceId.equals(this.wearDeviceId) && patientDocId.equals(this.patientDocId)) return;
+
+        tearDownSession();
+        this.userEmail = userEmail;
+        this.wearDeviceId = wearDeviceId;
+        this.patientDocId = patientDocId;
+        rollupWriter = new HeartRateRollupWriter(db, patientDocId);
+        readingWriter = new HeartRateReadingWriter(db, retryQueue, patientDocId, userEmail, pairingCode);
+        packedWriter = new PackedMeasurementWriter(db, measurementSink, patientDocId, userEmail, wearDeviceId);
+        alertWriter = new AnomalyAlertWriter(db, patientDocId, wearDeviceId);
+        String sessionDeviceId = wearDeviceId;
+        commandChannel = new WearCommandChannel(this, db, retryQueue, metrics, DEVICES_COLLECTION, wearDeviceId, command -> {
+            // A flushed command for the previous device must not stop this session
+            if (sessionDeviceId.equals(this.wearDeviceId)) {
+                onCommandFailed(command);
+            }
+        });
+        replayUnsyncedSamples();
+        setupHeartRateListener();
+    }
+
+    /**
+     * Asks the service to end its session, e.g. on sign-out: the watch is told to stop, pending data is
+     * flushed and the service shuts down once no client is bound.
+     */
+    public static void endSession(Context context) {
+        try {
+            context.startService(new Intent(context, HeartRateMonitorService.class).setAction(ACTION_END_SESSION));
+        } catch (IllegalStateException e) {
+            // Only refused while the app has no foreground service, i.e. nothing is being measured
+            Log.w(TAG, "Could not end session", e);
+        }
+    }
+
+    private void tearDownSession() {
+        if (deviceRegistration != null) {
+            deviceRegistration.remove();
+            deviceRegistration = null;
+        }
+        if (commandChannel != null) {
+            // The previous device still gets the last command requested for it
+            commandChannel.flush();
+            commandChannel = null;
+        }
+        if (rollupWriter != null) {
+            rollupWriter.flush();
+            readingWriter.flush();
+            archives.flush(patientDocId);
+        }
+        measurementSink.flush();
+        changeDetector.reset();
+        anomalyDetector.reset();
+        recentSamples.clear();
+        lastHeartRate = null;
+        openAnomalies.clear();
+        startCommandSentAt = -1;
+        userEmail = null;
+        wearDeviceId = null;
+        patientDocId = null;
+        rollupWriter = null;
+        readingWriter = null;
+        packedWriter = null;
+        alertWriter = null;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public HeartRateRingBuffer getRecentSamples() {
+        return recentSamples;
+    }
+
+    public Integer getLastHeartRate() {
+        return lastHeartRate;
+    }
+
+    /**
+     * The onsets of anomalies that have not resolved yet, oldest first.
+     */
+    public List<AnomalyEvent> getOpenAnomalies() {
+        List<AnomalyEvent> open = new ArrayList<>(openAnomalies.values());
+        Collections.sort(open, (a, b) -> Long.compare(a.getTimestampMillis(), b.getTimestampMillis()));
+        return open;
+    }
+
+    public boolean isMeasuring() {
+        return isMeasuring;
+    }
+
+    public void startMeasurement() {
+        if (commandChannel == null) return;
+
+        setMeasuring(true);
+        startCommandSentAt = SystemClock.elapsedRealtime();
+        commandChannel.request(WearCommandChannel.START);
+    }
+
+    public void stopMeasurement() {
+        setMeasuring(false);
+        startCommandSentAt = -1;
+
+        if (commandChannel == null) return;
+        commandChannel.request(WearCommandChannel.STOP);
+    }
+
+    private void onCommandFailed(String command) {
+        // A retryable failure stays journaled and the session keeps its state; only a rejected start is undone
+        if (!WearCommandChannel.START.equals(command)) return;
+        stopMeasurement();
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onCommandFailed();
+        }
+    }
+
+    private void setMeasuring(boolean measuring) {
+        if (isMeasuring == measuring) return;
+        isMeasuring = measuring;
+        // The gap around a pause is not a signal dropout; every measurement starts a fresh baseline
+        anomalyDetector.reset();
+        resolveOpenAnomalies();
+
+        if (measuring) {
+            handler.removeCallbacks(idleShutdown);
+            handler.postDelayed(dropoutCheck, DROPOUT_CHECK_INTERVAL_MS);
+            try {
+                // Started state keeps the session alive after every client has unbound
+                ContextCompat.startForegroundService(this, new Intent(this, HeartRateMonitorService.class));
+                ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                        ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+            } catch (IllegalStateException e) {
+                // Background start restrictions: the session keeps running only while a client is bound
+                Log.w(TAG, "Could not enter foreground", e);
+            }
+        } else {
+            handler.removeCallbacks(dropoutCheck);
+            // Publish the partial window so history shows the end of the measurement right away
+            if (readingWriter != null) {
+                readingWriter.flush();
+            }
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            if (listeners.isEmpty()) {
+                handler.postDelayed(idleShutdown, IDLE_SHUTDOWN_DELAY_MS);
+            }
+        }
+
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onMeasuringChanged(measuring);
+        }
+    }
+
+    private Notification buildNotification() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.heart_rate_monitoring), NotificationManager.IMPORTANCE_LOW));
+        }
+
+        Intent openIntent = new Intent(this, HeartRateActivity.class);
+        openIntent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, openIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentTitle(getString(R.string.heart_rate_monitoring))
+                .setContentText(getString(R.string.measurement_in_progress))
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .build();
+    }
+
+    private void setupHeartRateListener() {
+        deviceRegistration = db.collection(DEVICES_COLLECTION).document(wearDeviceId)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Listener error", e);
+                        return;
+                    }
+
+                    if (snapshot != null && snapshot.exists()) {
+                        commandChannel.onDeviceSnapshot(snapshot);
+                        handleHeartRateUpdate(snapshot);
+                        handleMeasurementStatus(snapshot);
+                    }
+                });
+    }
+
+    private void handleHeartRateUpdate(DocumentSnapshot doc) {
+        Long hr = doc.getLong("heartRate");
+        Long sampleTimestamp = getSampleTimestamp(doc);
+        boolean isNew = changeDetector.isNewSample(doc.getMetadata().hasPendingWrites(),
+                doc.getLong("sampleSequence"), sampleTimestamp, hr, getNonSampleFields(doc));
+        if (!isNew) {
+            if (hr != null && !doc.getMetadata().hasPendingWrites()) {
+                metrics.increment(PipelineMetrics.SAMPLES_DUPLICATE);
+            }
+            return;
+        }
+
+        int heartRate = hr.intValue();
+        long now = System.currentTimeMillis();
+        long timestamp = sampleTimestamp != null ? sampleTimestamp : now;
+        metrics.increment(PipelineMetrics.SAMPLES_RECEIVED);
+        if (sampleTimestamp != null) {
+            metrics.record(PipelineMetrics.SAMPLE_TO_SNAPSHOT, now - sampleTimestamp);
+        }
+        if (startCommandSentAt >= 0) {
+            metrics.record(PipelineMetrics.COMMAND_TO_FIRST_SAMPLE, SystemClock.elapsedRealtime() - startCommandSentAt);
+            startCommandSentAt = -1;
+        }
+        lastHeartRate = heartRate;
+        recentSamples.add(timestamp, heartRate);
+        saveHeartRateMeasurement(timestamp, heartRate);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onHeartRate(timestamp, heartRate);
+        }
+        anomalyDetector.onSample(timestamp, heartRate);
+    }
+
+    private void onAnomaly(AnomalyEvent event) {
+        Log.i(TAG, "Anomaly: " + event);
+        if (event.isOnset() && event.getType() != AnomalyEvent.Type.SUDDEN_JUMP) {
+            openAnomalies.put(event.getType(), event);
+        } else if (!event.isOnset()) {
+            openAnomalies.remove(event.getType());
+        }
+        if (alertWriter != null) {
+            alertWriter.write(event);
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onAnomaly(event);
+        }
+    }
+
+    private void resolveOpenAnomalies() {
+        for (AnomalyEvent onset : getOpenAnomalies()) {
+            float bpm = lastHeartRate != null ? lastHeartRate : onset.getBpm();
+            onAnomaly(new AnomalyEvent(onset.getType(), AnomalyEvent.Phase.RESOLVED, System.currentTimeMillis(),
+                    bpm, onset.getBaselineBpm()));
+        }
+    }
+
+    // Watch builds write sampleTimestamp either as a Firestore Timestamp or as epoch millis
+    private Long getSampleTimestamp(DocumentSnapshot doc) {
+        Object value = doc.get("sampleTimestamp");
+        return HeartRateSampleParser.parseTimestamp(value instanceof Timestamp ? ((Timestamp) value).toDate() : value);
+    }
+
+    private static Map<String, Object> getNonSampleFields(DocumentSnapshot doc) {
+        Map<String, Object> fields = doc.getData() != null ? new HashMap<>(doc.getData()) : new HashMap<>();
+        for (String field : SAMPLE_FIELDS) {
+            fields.remove(field);
+        }
+        return fields;
+    }
+
+    private void handleMeasurementStatus(DocumentSnapshot doc) {
+        // Until the latest request is written, the document still shows the state before it
+        if (commandChannel.isSettling()) return;
+        setMeasuring("measuring".equals(doc.getString("status")));
+    }
+
+    private void saveHeartRateMeasurement(long timestamp, int heartRate) {
+        if (patientDocId == null || userEmail == null) return;
+
+        // Local store first so the sample survives a failed or pending upload
+        localStore.insertSample(patientDocId, HeartRateLocalStore.RAW, timestamp, heartRate, false);
+        archives.append(patientDocId, timestamp, heartRate);
+        packedWriter.add(timestamp, heartRate);
+        rollupWriter.add(timestamp, heartRate);
+        readingWriter.add(timestamp, heartRate);
+    }
+
+    private void replayUnsyncedSamples() {
+        String sessionPatientId = patientDocId;
+        localStore.loadUnsynced(sessionPatientId, series -> {
+            if (series.isEmpty() || !sessionPatientId.equals(patientDocId)) return;
+            Log.d(TAG, "Replaying " + series.size() + " unsynced samples");
+            for (int i = 0; i < series.size(); i++) {
+                packedWriter.add(series.timestampAt(i), Math.round(series.valueAt(i)));
+            }
+        });
+    }
+
+    private void markSamplesSynced(List<Map<String, Object>> buckets) {
+        // The sink is flushed on every session switch, so a batch never mixes patients; read the ID from
+        // the documents because the session may have changed before the ack arrived
+        String batchPatientId = (String) buckets.get(0).get("patientId");
+        long now = System.currentTimeMillis();
+        for (Map<String, Object> bucket : buckets) {
+            long[] timestamps = PackedMeasurementWriter.timestampsOf(bucket);
+            localStore.markSynced(batchPatientId, timestamps);
+            // Buckets are re-sent whole as they fill, so only samples past the last commit are new.
+            // Replayed samples from earlier runs are skipped too: they would only measure downtime.
+            for (long timestamp : timestamps) {
+                if (timestamp > lastPersistedTimestamp && timestamp >= metrics.getStartedAt()) {
+                    metrics.record(PipelineMetrics.SAMPLE_TO_PERSISTED, now - timestamp);
+                    metrics.increment(PipelineMetrics.SAMPLES_PERSISTED);
+                    lastPersistedTimestamp = timestamp;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.health;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Averages live samples over fixed {@link #WINDOW} windows and writes one {@code heart_rate_readings}
+ * document per window, in the shape the history screen queries ({@code patientEmail},
+ * {@code pairingCode}, {@code averageHeartRate}, {@code timestamp} at the window start). A window is
+ * written when the first sample of the next one arrives and on {@link #flush()}; flushing a window
+ * that keeps receiving samples rewrites its document with the updated average. Failed writes go to
+ * the {@link PendingWriteQueue}. Must be used from the main thread.
+ */
+public class HeartRateReadingWriter {
+
+    private static final String TAG = "HeartRateReadingWriter";
+    public static final String COLLECTION = "heart_rate_readings";
+    public static final RollupResolution WINDOW = RollupResolution.MINUTE;
+
+    private final FirebaseFirestore db;
+    private final PendingWriteQueue retryQueue;
+    private final String patientId;
+    private final String patientEmail;
+    private final String pairingCode;
+    private final RollupAccumulator window = new RollupAccumulator(WINDOW);
+
+    public HeartRateReadingWriter(FirebaseFirestore db, PendingWriteQueue retryQueue, String patientId,
+                                  String patientEmail, String pairingCode) {
+        this.db = db;
+        this.retryQueue = retryQueue;
+        this.patientId = patientId;
+        this.patientEmail = patientEmail;
+        this.pairingCode = pairingCode;
+    }
+
+    public static String documentId(String pairingCode, long windowStart) {
+        return pairingCode + "_" + windowStart;
+    }
+
+    public void add(long timestampMillis, float bpm) {
+        if (window.isOutsideBucket(timestampMillis)) {
+            writeWindow();
+            window.reset(timestampMillis);
+        }
+        window.add(timestampMillis, bpm);
+    }
+
+    public void flush() {
+        writeWindow();
+    }
+
+    private void writeWindow() {
+        if (!window.hasUnwrittenSamples()) return;
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("patientId", patientId);
+        data.put("patientEmail", patientEmail);
+        data.put("pairingCode", pairingCode);
+        data.put("timestamp", new Timestamp(new Date(window.getBucketStart())));
+        data.put("averageHeartRate", Math.round(window.getMean() * 10) / 10.0);
+        data.put("minHeartRate", window.getMin());
+        data.put("maxHeartRate", window.getMax());
+        data.put("sampleCount", window.getCount());
+        data.put("windowMs", WINDOW.getBucketMillis());
+        data.put("source", "wear_os_device");
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        window.markWritten();
+
+        String documentId = documentId(pairingCode, window.getBucketStart());
+        retryQueue.supersede(COLLECTION, documentId);
+        db.collection(COLLECTION).document(documentId)
+                .set(data)
+                .addOnFailureListener(e -> {
+                    if (PendingWriteQueue.isRetryable(e)) {
+                        Log.w(TAG, "Reading write failed, journaling for retry", e);
+                        retryQueue.enqueue(COLLECTION, documentId, PendingWriteQueue.OP_SET, data);
+                    } else {
+                        Log.e(TAG, "Reading write failed", e);
+                    }
+                });
+    }
+}
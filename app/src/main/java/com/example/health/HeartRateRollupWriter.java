@@ -0,0 +1,121 @@
+package com.example.health;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains per-minute, per-hour and per-day min/max/sum/count rollup documents for one patient
+ * as samples are ingested. Rollups are written whenever a minute bucket closes (together with the
+ * still-open hour and day buckets) and on {@link #flush()}. Sum and count are sent as increments
+ * so concurrent or resumed sessions add up correctly. Must be used from the main thread.
+ */
+public class HeartRateRollupWriter {
+
+    private static final String TAG = "HeartRateRollupWriter";
+    public static final String COLLECTION = "heartRateRollups";
+
+    private final FirebaseFirestore db;
+    private final String patientId;
+    private final RollupBucketSet buckets = new RollupBucketSet();
+    // Buckets whose persisted extremes are being read
+    private final Set<RollupAccumulator> seeding = new HashSet<>();
+
+    public HeartRateRollupWriter(FirebaseFirestore db, String patientId) {
+        this.db = db;
+        this.patientId = patientId;
+    }
+
+    public static String documentId(String patientId, RollupResolution resolution, long bucketStart) {
+        return patientId + "_" + resolution.getId() + "_" + bucketStart;
+    }
+
+    public void add(long timestampMillis, float bpm) {
+        if (buckets.closesMinute(timestampMillis)) {
+            writePending();
+        }
+        for (RollupAccumulator opened : buckets.add(timestampMillis, bpm)) {
+            seedExtremes(opened);
+        }
+    }
+
+    public void flush() {
+        writePending();
+    }
+
+    private void writePending() {
+        WriteBatch batch = db.batch();
+        int writes = 0;
+        for (RollupAccumulator accumulator : buckets.all()) {
+            if (accumulator.hasPendingExtremes() && !seeding.contains(accumulator)) {
+                // The last read failed; try again, the extremes follow once it succeeds
+                seedExtremes(accumulator);
+            }
+            if (!accumulator.hasUnwrittenSamples()) continue;
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("patientId", patientId);
+            data.put("resolution", accumulator.getResolution().getId());
+            data.put("bucketStart", new Timestamp(new Date(accumulator.getBucketStart())));
+            if (!accumulator.hasPendingExtremes()) {
+                data.put("min", accumulator.getMin());
+                data.put("max", accumulator.getMax());
+            }
+            data.put("sum", FieldValue.increment(accumulator.getUnwrittenSum()));
+            data.put("count", FieldValue.increment(accumulator.getUnwrittenCount()));
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            batch.set(reference(accumulator), data, SetOptions.merge());
+            // Marked before the commit completes so a slow ack can never cause the same increment twice
+            accumulator.markWritten();
+            writes++;
+        }
+        if (writes == 0) return;
+
+        batch.commit().addOnFailureListener(e -> Log.e(TAG, "Rollup write failed", e));
+    }
+
+    /**
+     * Hour and day buckets usually span several sessions; pull in the extremes already stored for them
+     * so min/max written by this session do not overwrite earlier values. Until the read completes,
+     * writes carry only the sum and count increments, and the merged extremes are written once known,
+     * also for a bucket that has closed in the meantime.
+     */
+    private void seedExtremes(RollupAccumulator accumulator) {
+        seeding.add(accumulator);
+        reference(accumulator).get()
+                .addOnSuccessListener(document -> {
+                    seeding.remove(accumulator);
+                    if (buckets.onExtremesRead(accumulator, document.getDouble("min"), document.getDouble("max"))) {
+                        writeExtremes(accumulator);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    seeding.remove(accumulator);
+                    Log.w(TAG, "Could not read existing rollup", e);
+                });
+    }
+
+    private void writeExtremes(RollupAccumulator accumulator) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("min", accumulator.getMin());
+        data.put("max", accumulator.getMax());
+        reference(accumulator).set(data, SetOptions.merge())
+                .addOnFailureListener(e -> Log.e(TAG, "Rollup extremes write failed", e));
+    }
+
+    private DocumentReference reference(RollupAccumulator accumulator) {
+        return db.collection(COLLECTION)
+                .document(documentId(patientId, accumulator.getResolution(), accumulator.getBucketStart()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.health;
+
+import android.content.SharedPreferences;
+
+/**
+ * The screen sign-in last routed a user to, cached so the next cold start can route immediately
+ * while the real state is revalidated in the background.
+ */
+public final class LaunchRoute {
+
+    public static final String MAIN = "main";
+    public static final String PAIRING = "pairing";
+    public static final String PATIENT_INFO = "patient_info";
+
+    static final String PREF_ROUTE_DESTINATION = "launch_route_destination";
+    static final String PREF_ROUTE_USER_ID = "launch_route_user_id";
+
+    public final String destination;
+    public final String userId;
+    public final String patientDocId;
+
+    public LaunchRoute(String destination, String userId, String patientDocId) {
+        this.destination = destination;
+        this.userId = userId;
+        this.patientDocId = patientDocId;
+    }
+
+    public static LaunchRoute fromRepository(String userId, PatientRepository repository) {
+        PatientRepository.Patient patient = repository.getPatient();
+        if (patient == null) {
+            return new LaunchRoute(PATIENT_INFO, userId, null);
+        } else if (repository.getWearDevice() == null) {
+            return new LaunchRoute(PAIRING, userId, patient.documentId);
+        }
+        return new LaunchRoute(MAIN, userId, patient.documentId);
+    }
+
+    /**
+     * Returns the cached route for {@code userId}, or {@code null} if none was stored for that user.
+     */
+    public static LaunchRoute load(SharedPreferences sharedPref, String userId) {
+        String destination = sharedPref.getString(PREF_ROUTE_DESTINATION, null);
+        if (destination == null || !userId.equals(sharedPref.getString(PREF_ROUTE_USER_ID, null))) {
+            return null;
+        }
+        return new LaunchRoute(destination, userId, sharedPref.getString(SignInActivity.PREF_PATIENT_ID, null));
+    }
+
+    public void save(SharedPreferences sharedPref) {
+        SharedPreferences.Editor editor = sharedPref.edit()
+                .putString(PREF_ROUTE_DESTINATION, destination)
+                .putString(PREF_ROUTE_USER_ID, userId);
+        if (patientDocId != null) {
+            editor.putString(SignInActivity.PREF_PATIENT_ID, patientDocId);
+        }
+        editor.apply();
+    }
+
+    public static void clear(SharedPreferences sharedPref) {
+        sharedPref.edit()
+                .remove(PREF_ROUTE_DESTINATION)
+                .remove(PREF_ROUTE_USER_ID)
+                .apply();
+    }
+}
@@ -2,6 +2,7 @@ package com.example.health;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -23,6 +24,7 @@ public class MainActivity extends AppCompatActivity {
     private String userEmail;
     private static final String TAG = "MainActivity";
     private SharedPreferences sharedPref;
+    private PatientRepository repository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,6 +38,7 @@ public class MainActivity extends AppCompatActivity {
         // Initialize Firebase authentication
         sharedPref = getSharedPreferences(SignInActivity.PREFS_NAME, MODE_PRIVATE);
         auth = FirebaseAuth.getInstance();
+        repository = PatientRepository.getInstance(this);
 
         // Get user email from intent or Firebase Auth
         userEmail = getIntent().getStringExtra("USER_EMAIL");
@@ -75,6 +78,11 @@ public class MainActivity extends AppCompatActivity {
         if (auth.getCurrentUser() == null) {
             Log.w(TAG, "User not authenticated");
             redirectToSignIn();
+        } else {
+            // No-op if sign-in already attached the listeners for this user
+            repository.start(auth.getCurrentUser().getUid());
+            // The dashboard is usable once the patient and device IDs are known
+            repository.whenLoaded().addOnCompleteListener(this, task -> reportFullyDrawn());
         }
 
         // Set button listeners
@@ -85,6 +93,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        menu.findItem(R.id.action_metrics).setVisible(debuggable);
         return true;
     }
 
@@ -97,13 +107,21 @@ public class MainActivity extends AppCompatActivity {
         } else if (id == R.id.action_profile) {
             navigateToProfile();
             return true;
+        } else if (id == R.id.action_caregiver_dashboard) {
+            startActivity(new Intent(this, CaregiverDashboardActivity.class));
+            return true;
+        } else if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsDebugActivity.class));
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
     private void signOut() {
         try {
+            HeartRateMonitorService.endSession(this);
             auth.signOut();
+            repository.stop();
             sharedPref.edit().clear().apply();
             redirectToSignIn();
         } catch (Exception e) {
@@ -126,10 +144,10 @@ public class MainActivity extends AppCompatActivity {
 
     private void navigateToHeartRate() {
         try {
-            // Retrieve pairing information from SharedPreferences
-            String pairingCode = sharedPref.getString(SignInActivity.PREF_PAIRING_CODE, null);
-            String deviceId = sharedPref.getString(SignInActivity.PREF_DEVICE_ID, null);
-            String patientDocId = sharedPref.getString(SignInActivity.PREF_PATIENT_ID, null);
+            // Pairing information comes from the in-memory repository cache
+            String pairingCode = repository.getPairingCode();
+            String deviceId = repository.getWearDeviceId();
+            String patientDocId = repository.getPatientDocId();
 
             // Debug log to check retrieved values
             Log.d(TAG, "Pairing Code: " + pairingCode);
@@ -0,0 +1,188 @@
+package com.example.health;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers measurement documents and commits them to Firestore as {@link WriteBatch}es.
+ * A batch is flushed when the buffer reaches {@code maxBatchSize} samples or when the
+ * oldest buffered sample is {@code maxDelayMs} old, whichever comes first. Batches that fail with a
+ * transient error are handed to the {@link PendingWriteQueue}, if one is set.
+ * Must be used from the main thread.
+ */
+public class MeasurementSink {
+
+    private static final String TAG = "MeasurementSink";
+    public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+    public static final long DEFAULT_MAX_DELAY_MS = 5000L;
+    // Hard limit on operations in a single Firestore batch
+    private static final int FIRESTORE_BATCH_LIMIT = 500;
+
+    public interface OnBatchCommittedListener {
+        void onBatchCommitted(List<Map<String, Object>> samples);
+    }
+
+    private final FirebaseFirestore db;
+    private final CollectionReference collection;
+    private final int maxBatchSize;
+    private final long maxDelayMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+    private List<Map<String, Object>> buffer = new ArrayList<>();
+    private List<String> bufferIds = new ArrayList<>();
+    private OnBatchCommittedListener batchCommittedListener;
+    private PendingWriteQueue retryQueue;
+
+    private long batchesSent;
+    private long batchesFailed;
+    private long samplesSent;
+    private int lastBatchSize;
+    private long lastFlushLatencyMs;
+    private long totalFlushLatencyMs;
+    private long maxFlushLatencyMs;
+
+    public MeasurementSink(FirebaseFirestore db, String collectionPath) {
+        this(db, collectionPath, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public MeasurementSink(FirebaseFirestore db, String collectionPath, int maxBatchSize, long maxDelayMs) {
+        if (maxBatchSize < 1 || maxBatchSize > FIRESTORE_BATCH_LIMIT) {
+            throw new IllegalArgumentException("maxBatchSize must be between 1 and " + FIRESTORE_BATCH_LIMIT);
+        }
+        this.db = db;
+        this.collection = db.collection(collectionPath);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public void setOnBatchCommittedListener(OnBatchCommittedListener listener) {
+        this.batchCommittedListener = listener;
+    }
+
+    public void setRetryQueue(PendingWriteQueue retryQueue) {
+        this.retryQueue = retryQueue;
+    }
+
+    public void add(Map<String, Object> sample) {
+        add(null, sample);
+    }
+
+    /**
+     * Buffers a sample under a fixed document ID so that re-sending it is idempotent. Re-adding an ID
+     * that is still buffered replaces the pending document instead of writing it twice.
+     */
+    public void add(String documentId, Map<String, Object> sample) {
+        int existing = documentId != null ? bufferIds.indexOf(documentId) : -1;
+        if (existing >= 0) {
+            buffer.set(existing, sample);
+            return;
+        }
+        buffer.add(sample);
+        bufferIds.add(documentId);
+        if (buffer.size() >= maxBatchSize) {
+            flush();
+        } else if (buffer.size() == 1) {
+            handler.postDelayed(flushRunnable, maxDelayMs);
+        }
+    }
+
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (buffer.isEmpty()) return;
+
+        List<Map<String, Object>> pending = buffer;
+        List<String> pendingIds = bufferIds;
+        buffer = new ArrayList<>();
+        bufferIds = new ArrayList<>();
+
+        WriteBatch batch = db.batch();
+        for (int i = 0; i < pending.size(); i++) {
+            String documentId = pendingIds.get(i);
+            DocumentReference reference = documentId != null ? collection.document(documentId) : collection.document();
+            // Fix generated IDs now so a retried write lands on the same document
+            pendingIds.set(i, reference.getId());
+            batch.set(reference, pending.get(i));
+            if (retryQueue != null) {
+                retryQueue.supersede(collection.getPath(), reference.getId());
+            }
+        }
+
+        int size = pending.size();
+        long startedAt = SystemClock.elapsedRealtime();
+        batch.commit()
+                .addOnSuccessListener(unused -> {
+                    recordFlush(size, SystemClock.elapsedRealtime() - startedAt);
+                    if (batchCommittedListener != null) {
+                        batchCommittedListener.onBatchCommitted(pending);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    batchesFailed++;
+                    if (retryQueue != null && PendingWriteQueue.isRetryable(e)) {
+                        Log.w(TAG, "Batch of " + size + " samples failed, journaling for retry", e);
+                        for (int i = 0; i < size; i++) {
+                            retryQueue.enqueue(collection.getPath(), pendingIds.get(i), PendingWriteQueue.OP_SET, pending.get(i));
+                        }
+                    } else {
+                        Log.e(TAG, "Batch of " + size + " samples failed", e);
+                    }
+                });
+    }
+
+    private void recordFlush(int size, long latencyMs) {
+        batchesSent++;
+        samplesSent += size;
+        lastBatchSize = size;
+        lastFlushLatencyMs = latencyMs;
+        totalFlushLatencyMs += latencyMs;
+        maxFlushLatencyMs = Math.max(maxFlushLatencyMs, latencyMs);
+        Log.d(TAG, "Committed " + size + " samples in " + latencyMs + " ms");
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent;
+    }
+
+    public long getBatchesFailed() {
+        return batchesFailed;
+    }
+
+    public long getSamplesSent() {
+        return samplesSent;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public double getAverageSamplesPerBatch() {
+        return batchesSent == 0 ? 0 : (double) samplesSent / batchesSent;
+    }
+
+    public long getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    public double getAverageFlushLatencyMs() {
+        return batchesSent == 0 ? 0 : (double) totalFlushLatencyMs / batchesSent;
+    }
+
+    public long getMaxFlushLatencyMs() {
+        return maxFlushLatencyMs;
+    }
+}
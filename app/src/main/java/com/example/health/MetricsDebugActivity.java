@@ -0,0 +1,76 @@
+package com.example.health;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import org.json.JSONException;
+
+/**
+ * Debug-only view of {@link PipelineMetrics}, refreshed once per second while visible.
+ */
+public class MetricsDebugActivity extends AppCompatActivity {
+
+    private static final String TAG = "MetricsDebugActivity";
+    private static final long REFRESH_INTERVAL_MS = 1000L;
+
+    private TextView tvMetrics;
+    private PipelineMetrics metrics;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            showMetrics();
+            tvMetrics.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics_debug);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(R.string.pipeline_metrics);
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        metrics = PipelineMetrics.getInstance(this);
+        tvMetrics = findViewById(R.id.tvMetrics);
+        findViewById(R.id.btnReset).setOnClickListener(v -> {
+            metrics.reset();
+            showMetrics();
+        });
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refresh.run();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        tvMetrics.removeCallbacks(refresh);
+    }
+
+    private void showMetrics() {
+        try {
+            tvMetrics.setText(metrics.toJson().toString(2) + "\n\nDumped to " + metrics.getDumpFile());
+        } catch (JSONException e) {
+            Log.e(TAG, "Formatting failed", e);
+        }
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        onBackPressed();
+        return true;
+    }
+}
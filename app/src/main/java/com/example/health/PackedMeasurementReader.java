@@ -0,0 +1,59 @@
+package com.example.health;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads packed measurement documents written by {@link PackedMeasurementWriter} and unpacks them into
+ * a time-ordered {@link HeartRateSeries}.
+ */
+public class PackedMeasurementReader {
+
+    private final FirebaseFirestore db;
+
+    public PackedMeasurementReader(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    /**
+     * Loads every sample of {@code patientId} with {@code fromInclusive <= timestamp < toExclusive}.
+     */
+    public Task<HeartRateSeries> loadRange(String patientId, long fromInclusive, long toExclusive) {
+        long firstBucket = PackedMeasurementWriter.BUCKET.bucketStart(fromInclusive);
+        return db.collection(PackedMeasurementWriter.COLLECTION)
+                .whereEqualTo("patientId", patientId)
+                .whereGreaterThanOrEqualTo("bucketStart", new Timestamp(new Date(firstBucket)))
+                .whereLessThan("bucketStart", new Timestamp(new Date(toExclusive)))
+                .orderBy("bucketStart", Query.Direction.ASCENDING)
+                .get()
+                .continueWith(task -> {
+                    List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                    HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(documents.size() * 60);
+                    for (DocumentSnapshot document : documents) {
+                        Timestamp bucketStart = document.getTimestamp("bucketStart");
+                        if (bucketStart == null) continue;
+                        PackedSampleBucket.unpack(bucketStart.toDate().getTime(),
+                                (List<?>) document.get("offsets"), (List<?>) document.get("values"), builder);
+                    }
+                    return trim(builder.build(), fromInclusive, toExclusive);
+                });
+    }
+
+    // The first bucket may start before the requested range and the last one may run past its end
+    private static HeartRateSeries trim(HeartRateSeries series, long fromInclusive, long toExclusive) {
+        int start = series.indexAtOrAfter(fromInclusive);
+        int end = series.indexAtOrAfter(toExclusive);
+        if (start == 0 && end == series.size()) return series;
+        HeartRateSeriesBuilder builder = new HeartRateSeriesBuilder(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            builder.add(series.timestampAt(i), series.valueAt(i));
+        }
+        return builder.build();
+    }
+}
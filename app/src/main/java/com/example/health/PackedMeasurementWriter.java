@@ -0,0 +1,144 @@
+package com.example.health;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs one patient's heart-rate samples into a single document per minute holding parallel
+ * {@code offsets} (ms from {@code bucketStart}) and {@code values} arrays, instead of one document per
+ * reading. Every change re-queues the whole bucket on the {@link MeasurementSink}, which keeps only
+ * the latest copy per document, so a minute costs about one write per sink flush. Must be used from
+ * the main thread.
+ */
+public class PackedMeasurementWriter {
+
+    private static final String TAG = "PackedMeasurementWriter";
+    public static final String COLLECTION = "heartRateMeasurementBuckets";
+    public static final RollupResolution BUCKET = RollupResolution.MINUTE;
+    // Live samples only touch the current minute; replays of unsynced samples may reopen a few older ones
+    private static final int MAX_OPEN_BUCKETS = 8;
+
+    private final FirebaseFirestore db;
+    private final MeasurementSink sink;
+    private final String patientId;
+    private final String userEmail;
+    private final String deviceId;
+    private final Set<Long> seedingBuckets = new HashSet<>();
+    private final LinkedHashMap<Long, PackedSampleBucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+    public PackedMeasurementWriter(FirebaseFirestore db, MeasurementSink sink, String patientId, String userEmail, String deviceId) {
+        this.db = db;
+        this.sink = sink;
+        this.patientId = patientId;
+        this.userEmail = userEmail;
+        this.deviceId = deviceId;
+    }
+
+    public static String documentId(String patientId, long bucketStart) {
+        return patientId + "_" + bucketStart;
+    }
+
+    /**
+     * Expands a packed document, as committed by the sink, back into sample timestamps.
+     */
+    public static long[] timestampsOf(Map<String, Object> document) {
+        long bucketStart = ((Timestamp) document.get("bucketStart")).toDate().getTime();
+        List<?> offsets = (List<?>) document.get("offsets");
+        long[] timestamps = new long[offsets.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = bucketStart + ((Number) offsets.get(i)).longValue();
+        }
+        return timestamps;
+    }
+
+    public void add(long timestampMillis, int heartRate) {
+        long bucketStart = BUCKET.bucketStart(timestampMillis);
+        PackedSampleBucket bucket = buckets.get(bucketStart);
+        if (bucket == null) {
+            bucket = openBucket(bucketStart);
+        }
+        bucket.add(timestampMillis, heartRate);
+        if (!seedingBuckets.contains(bucketStart)) {
+            enqueue(bucket);
+        }
+    }
+
+    public void flush() {
+        sink.flush();
+    }
+
+    private PackedSampleBucket openBucket(long bucketStart) {
+        PackedSampleBucket bucket = new PackedSampleBucket(bucketStart);
+        buckets.put(bucketStart, bucket);
+        evictIdleBuckets();
+        seed(bucket);
+        return bucket;
+    }
+
+    /**
+     * The document is rewritten whole, so samples stored by an earlier session in the same minute are
+     * read back first. Writes for the bucket are held until the read settles.
+     */
+    private void seed(PackedSampleBucket bucket) {
+        long bucketStart = bucket.getBucketStart();
+        seedingBuckets.add(bucketStart);
+        reference(bucketStart).get().addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                DocumentSnapshot document = task.getResult();
+                List<?> offsets = (List<?>) document.get("offsets");
+                List<?> values = (List<?>) document.get("values");
+                if (offsets != null && values != null) {
+                    bucket.merge(offsets, values);
+                }
+            } else {
+                Log.w(TAG, "Could not read existing bucket " + bucketStart, task.getException());
+            }
+            seedingBuckets.remove(bucketStart);
+            if (bucket.size() > 0) {
+                enqueue(bucket);
+            }
+        });
+    }
+
+    private void enqueue(PackedSampleBucket bucket) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("patientId", patientId);
+        data.put("userEmail", userEmail);
+        data.put("deviceId", deviceId);
+        data.put("source", "wear_os_device");
+        data.put("bucketStart", new Timestamp(new Date(bucket.getBucketStart())));
+        data.put("offsets", bucket.offsetList());
+        data.put("values", bucket.valueList());
+        data.put("count", bucket.size());
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        sink.add(documentId(patientId, bucket.getBucketStart()), data);
+    }
+
+    private void evictIdleBuckets() {
+        Iterator<Map.Entry<Long, PackedSampleBucket>> iterator = buckets.entrySet().iterator();
+        while (buckets.size() > MAX_OPEN_BUCKETS && iterator.hasNext()) {
+            Map.Entry<Long, PackedSampleBucket> eldest = iterator.next();
+            if (!seedingBuckets.contains(eldest.getKey())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private DocumentReference reference(long bucketStart) {
+        return db.collection(COLLECTION).document(documentId(patientId, bucketStart));
+    }
+}
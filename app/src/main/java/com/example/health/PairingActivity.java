@@ -16,6 +16,7 @@ import androidx.core.content.ContextCompat;
 
 import com.example.health.databinding.ActivityPairingBinding;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.journeyapps.barcodescanner.ScanContract;
@@ -108,6 +109,9 @@ public class PairingActivity extends AppCompatActivity {
         }
 
         String patientDocId = getIntent().getStringExtra("PATIENT_DOC_ID");
+        if (patientDocId == null) {
+            patientDocId = PatientRepository.getInstance(this).getPatientDocId();
+        }
         if (patientDocId == null) {
             Toast.makeText(this, "Patient record missing", Toast.LENGTH_SHORT).show();
             return;
@@ -166,6 +170,11 @@ public class PairingActivity extends AppCompatActivity {
         editor.putString(SignInActivity.PREF_DEVICE_ID, deviceId);
         editor.putString(SignInActivity.PREF_PATIENT_ID, patientDocId);
         editor.apply();
+        FirebaseUser user = auth.getCurrentUser();
+        if (user != null) {
+            new LaunchRoute(LaunchRoute.MAIN, user.getUid(), patientDocId)
+                    .save(getSharedPreferences(SignInActivity.PREFS_NAME, MODE_PRIVATE));
+        }
     }
 
     private void handlePairingError(String message, Exception e) {
@@ -198,6 +207,8 @@ public class PairingActivity extends AppCompatActivity {
 
     private void signOut() {
         getSharedPreferences(SignInActivity.PREFS_NAME, MODE_PRIVATE).edit().clear().apply();
+        PatientRepository.getInstance(this).stop();
+        HeartRateMonitorService.endSession(this);
         auth.signOut();
         redirectToSignIn();
     }
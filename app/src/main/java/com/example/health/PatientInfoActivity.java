@@ -105,7 +105,9 @@ public class PatientInfoActivity extends AppCompatActivity {
     private void navigateToSignIn() {
         try {
             // Sign out from Firebase
+            HeartRateMonitorService.endSession(this);
             auth.signOut();
+            PatientRepository.getInstance(this).stop();
 
             // Clear the stay connected preference
             SharedPreferences.Editor editor = sharedPref.edit();
@@ -167,6 +169,7 @@ public class PatientInfoActivity extends AppCompatActivity {
 
             db.collection("patients").add(patientData)
                     .addOnSuccessListener(docRef -> {
+                        new LaunchRoute(LaunchRoute.PAIRING, userId, docRef.getId()).save(sharedPref);
                         Intent intent = new Intent(this, PairingActivity.class);
                         intent.putExtra("PATIENT_DOC_ID", docRef.getId());
                         intent.putExtra("USER_EMAIL", userEmail);
@@ -0,0 +1,325 @@
+package com.example.health;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Process-wide cache of the signed-in user's patient, wear device and pairing code documents.
+ * Each entity is kept fresh by a single snapshot listener, so screens read IDs from memory instead
+ * of re-querying Firestore. Resolved IDs are mirrored into the auth SharedPreferences so a cold start
+ * can use them before the listeners deliver. Must be used from the main thread.
+ */
+public class PatientRepository {
+
+    private static final String TAG = "PatientRepository";
+
+    public interface Listener {
+        void onRepositoryChanged(PatientRepository repository);
+    }
+
+    public static final class Patient {
+        public final String documentId;
+        public final String firstName;
+        public final String lastName;
+        public final String email;
+        public final String pairingCode;
+
+        Patient(DocumentSnapshot doc) {
+            documentId = doc.getId();
+            firstName = doc.getString("firstName");
+            lastName = doc.getString("lastName");
+            email = doc.getString("email");
+            pairingCode = doc.getString("pairingCode");
+        }
+    }
+
+    public static final class WearDevice {
+        public final String documentId;
+        public final String deviceId;
+        public final String code;
+        public final String status;
+
+        WearDevice(DocumentSnapshot doc) {
+            documentId = doc.getId();
+            deviceId = doc.getString("deviceId");
+            code = doc.getString("code");
+            status = doc.getString("status");
+        }
+
+        boolean sameAs(WearDevice other) {
+            return other != null && documentId.equals(other.documentId) && Objects.equals(deviceId, other.deviceId)
+                    && Objects.equals(code, other.code) && Objects.equals(status, other.status);
+        }
+    }
+
+    public static final class Pairing {
+        public final String code;
+        public final String status;
+        public final boolean setupComplete;
+
+        Pairing(DocumentSnapshot doc) {
+            code = doc.getId();
+            status = doc.getString("status");
+            setupComplete = Boolean.TRUE.equals(doc.getBoolean("setupComplete"));
+        }
+    }
+
+    private static PatientRepository instance;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final SharedPreferences sharedPref;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+    private final List<TaskCompletionSource<Void>> loadWaiters = new ArrayList<>();
+
+    private String userId;
+    private Patient patient;
+    private WearDevice wearDevice;
+    private Pairing pairing;
+    private boolean patientLoaded;
+    private boolean wearDeviceLoaded;
+    private boolean pairingLoaded;
+    // Entities whose latest delivery was a listener error rather than a snapshot
+    private boolean patientFailed;
+    private boolean wearDeviceFailed;
+    private boolean pairingFailed;
+    // Entities whose latest snapshot was confirmed by the server rather than served from the local cache
+    private boolean patientFromServer;
+    private boolean wearDeviceFromServer;
+    private boolean pairingFromServer;
+
+    public static synchronized PatientRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PatientRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PatientRepository(Context context) {
+        sharedPref = context.getSharedPreferences(SignInActivity.PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Attaches the entity listeners for {@code userId}. Calling it again for the same user is a no-op.
+     */
+    public void start(String userId) {
+        if (userId.equals(this.userId)) return;
+        stop();
+        this.userId = userId;
+
+        // Metadata changes are included so a cached snapshot is followed by its server confirmation
+        registrations.add(db.collection("patients")
+                .whereEqualTo("userId", userId)
+                .limit(1)
+                .addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Patient listener error", e);
+                        // Treated as missing so callers waiting on isLoaded() can still route
+                        patientLoaded = true;
+                        patientFailed = true;
+                        patientFromServer = false;
+                        notifyListeners();
+                        return;
+                    }
+                    DocumentSnapshot doc = firstOrNull(snapshot);
+                    patient = doc != null ? new Patient(doc) : null;
+                    patientLoaded = true;
+                    patientFailed = false;
+                    patientFromServer = !snapshot.getMetadata().isFromCache();
+                    if (patient != null) {
+                        sharedPref.edit().putString(SignInActivity.PREF_PATIENT_ID, patient.documentId).apply();
+                    }
+                    notifyListeners();
+                }));
+
+        // Matched on owner only: measurement commands overwrite the device status
+        registrations.add(db.collection("wearDevices")
+                .whereEqualTo("userId", userId)
+                .limit(1)
+                .addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Wear device listener error", e);
+                        // Treated as missing so callers waiting on isLoaded() can still route
+                        wearDeviceLoaded = true;
+                        wearDeviceFailed = true;
+                        wearDeviceFromServer = false;
+                        notifyListeners();
+                        return;
+                    }
+                    DocumentSnapshot doc = firstOrNull(snapshot);
+                    WearDevice device = doc != null ? new WearDevice(doc) : null;
+                    // The watch rewrites its document with every sample; only the cached fields matter here
+                    boolean unchanged = device != null ? device.sameAs(wearDevice) : wearDevice == null;
+                    boolean fromServer = !snapshot.getMetadata().isFromCache();
+                    if (wearDeviceLoaded && !wearDeviceFailed && unchanged && fromServer == wearDeviceFromServer) return;
+                    String previousDeviceId = wearDevice != null ? wearDevice.deviceId : null;
+                    wearDevice = device;
+                    wearDeviceLoaded = true;
+                    wearDeviceFailed = false;
+                    wearDeviceFromServer = fromServer;
+                    if (device != null && device.deviceId != null && !device.deviceId.equals(previousDeviceId)) {
+                        sharedPref.edit()
+                                .putString(SignInActivity.PREF_DEVICE_ID, wearDevice.deviceId)
+                                .putBoolean(SignInActivity.PREF_PAIRING_COMPLETE, true)
+                                .apply();
+                    }
+                    notifyListeners();
+                }));
+
+        registrations.add(db.collection("pairingCodes")
+                .whereEqualTo("userId", userId)
+                .limit(1)
+                .addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Pairing listener error", e);
+                        // Treated as missing so callers waiting on isLoaded() can still route
+                        pairingLoaded = true;
+                        pairingFailed = true;
+                        pairingFromServer = false;
+                        notifyListeners();
+                        return;
+                    }
+                    DocumentSnapshot doc = firstOrNull(snapshot);
+                    pairing = doc != null ? new Pairing(doc) : null;
+                    pairingLoaded = true;
+                    pairingFailed = false;
+                    pairingFromServer = !snapshot.getMetadata().isFromCache();
+                    if (pairing != null) {
+                        sharedPref.edit().putString(SignInActivity.PREF_PAIRING_CODE, pairing.code).apply();
+                    }
+                    notifyListeners();
+                }));
+    }
+
+    /**
+     * Detaches all listeners and clears the cache, e.g. on sign-out.
+     */
+    public void stop() {
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+        for (TaskCompletionSource<Void> waiter : loadWaiters) {
+            waiter.trySetException(new IllegalStateException("Repository stopped"));
+        }
+        loadWaiters.clear();
+        userId = null;
+        patient = null;
+        wearDevice = null;
+        pairing = null;
+        patientLoaded = false;
+        wearDeviceLoaded = false;
+        pairingLoaded = false;
+        patientFailed = false;
+        wearDeviceFailed = false;
+        pairingFailed = false;
+        patientFromServer = false;
+        wearDeviceFromServer = false;
+        pairingFromServer = false;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * True once every entity listener has delivered at least one snapshot.
+     */
+    public boolean isLoaded() {
+        return patientLoaded && wearDeviceLoaded && pairingLoaded;
+    }
+
+    /**
+     * Completes once every entity listener has delivered, so it can be combined with other sign-in tasks.
+     */
+    public Task<Void> whenLoaded() {
+        if (isLoaded()) {
+            return Tasks.forResult(null);
+        }
+        TaskCompletionSource<Void> waiter = new TaskCompletionSource<>();
+        loadWaiters.add(waiter);
+        return waiter.getTask();
+    }
+
+    /**
+     * True if any entity counts as loaded only because its listener failed, so a missing entity may
+     * just be unknown and nothing derived from it should be persisted.
+     */
+    public boolean hasLoadErrors() {
+        return patientFailed || wearDeviceFailed || pairingFailed;
+    }
+
+    /**
+     * True once every entity's latest snapshot came from the server; until then a missing entity may
+     * only be missing from the local cache.
+     */
+    public boolean isServerConfirmed() {
+        return patientFromServer && wearDeviceFromServer && pairingFromServer;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public WearDevice getWearDevice() {
+        return wearDevice;
+    }
+
+    public Pairing getPairing() {
+        return pairing;
+    }
+
+    public String getPatientDocId() {
+        return patient != null ? patient.documentId : sharedPref.getString(SignInActivity.PREF_PATIENT_ID, null);
+    }
+
+    public String getWearDeviceId() {
+        return wearDevice != null && wearDevice.deviceId != null
+                ? wearDevice.deviceId : sharedPref.getString(SignInActivity.PREF_DEVICE_ID, null);
+    }
+
+    public String getPairingCode() {
+        if (pairing != null) return pairing.code;
+        if (patient != null && patient.pairingCode != null) return patient.pairingCode;
+        return sharedPref.getString(SignInActivity.PREF_PAIRING_CODE, null);
+    }
+
+    private void notifyListeners() {
+        if (isLoaded() && !loadWaiters.isEmpty()) {
+            List<TaskCompletionSource<Void>> waiters = new ArrayList<>(loadWaiters);
+            loadWaiters.clear();
+            for (TaskCompletionSource<Void> waiter : waiters) {
+                waiter.trySetResult(null);
+            }
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRepositoryChanged(this);
+        }
+    }
+
+    private static DocumentSnapshot firstOrNull(QuerySnapshot snapshot) {
+        return snapshot == null || snapshot.isEmpty() ? null : snapshot.getDocuments().get(0);
+    }
+}
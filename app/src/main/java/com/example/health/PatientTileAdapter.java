@@ -0,0 +1,83 @@
+package com.example.health;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Binds {@link CaregiverFeed.PatientTile}s. Lists are diffed off the main thread, so a snapshot that
+ * changes one patient rebinds one tile.
+ */
+public class PatientTileAdapter extends ListAdapter<CaregiverFeed.PatientTile, PatientTileAdapter.TileViewHolder> {
+
+    private static final DiffUtil.ItemCallback<CaregiverFeed.PatientTile> DIFF = new DiffUtil.ItemCallback<CaregiverFeed.PatientTile>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CaregiverFeed.PatientTile oldItem, @NonNull CaregiverFeed.PatientTile newItem) {
+            return oldItem.userId.equals(newItem.userId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CaregiverFeed.PatientTile oldItem, @NonNull CaregiverFeed.PatientTile newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    public PatientTileAdapter() {
+        super(DIFF);
+    }
+
+    @NonNull
+    @Override
+    public TileViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_patient_tile, parent, false);
+        return new TileViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull TileViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    static final class TileViewHolder extends RecyclerView.ViewHolder {
+        private final TextView tvName;
+        private final TextView tvHeartRate;
+        private final TextView tvStatus;
+
+        TileViewHolder(View itemView) {
+            super(itemView);
+            tvName = itemView.findViewById(R.id.tvPatientName);
+            tvHeartRate = itemView.findViewById(R.id.tvTileHeartRate);
+            tvStatus = itemView.findViewById(R.id.tvTileStatus);
+        }
+
+        void bind(CaregiverFeed.PatientTile tile) {
+            tvName.setText(tile.name);
+            tvStatus.setText(tile.measuring ? R.string.tile_measuring : R.string.tile_idle);
+            if (tile.heartRate == null) {
+                tvHeartRate.setText("--");
+                tvHeartRate.setTextColor(ContextCompat.getColor(itemView.getContext(), R.color.heart_rate_normal));
+                return;
+            }
+            tvHeartRate.setText(String.valueOf(tile.heartRate));
+            tvHeartRate.setTextColor(ContextCompat.getColor(itemView.getContext(), getZoneColor(tile.heartRate)));
+        }
+
+        private static int getZoneColor(int heartRate) {
+            switch (HeartRateZone.classify(heartRate)) {
+                case LOW:
+                    return R.color.heart_rate_low;
+                case HIGH:
+                    return R.color.heart_rate_high;
+                default:
+                    return R.color.heart_rate_normal;
+            }
+        }
+    }
+}
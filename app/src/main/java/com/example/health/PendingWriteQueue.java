@@ -0,0 +1,377 @@
+package com.example.health;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide retry queue for Firestore writes that failed with a transient error. Writes are kept
+ * in a {@link WriteJournal} under {@code files/journal}, so they survive process death, and are
+ * drained in batch commits with exponential backoff and jitter; a regained network connection
+ * triggers an immediate drain. Only the latest write per document is kept. Journal I/O runs on a
+ * background thread. Must be used from the main thread.
+ */
+public class PendingWriteQueue {
+
+    private static final String TAG = "PendingWriteQueue";
+    private static final String JOURNAL_FILE = "journal/writes.log";
+
+    public static final int OP_SET = 0;
+    public static final int OP_MERGE = 1;
+    public static final int OP_UPDATE = 2;
+
+    // Hard limit on operations in a single Firestore batch
+    private static final int BATCH_LIMIT = 500;
+    private static final long BASE_RETRY_DELAY_MS = 2000L;
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60_000L;
+
+    private static final String TYPE_TIMESTAMP = "$timestamp";
+    private static final String TYPE_SERVER_TIMESTAMP = "$serverTimestamp";
+
+    public interface OnWritesCommittedListener {
+        void onWritesCommitted(String collection, List<Map<String, Object>> documents);
+    }
+
+    private static PendingWriteQueue instance;
+
+    private final FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private final File journalFile;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable drainRunnable = this::drain;
+    private final RetryBackoff backoff = new RetryBackoff(BASE_RETRY_DELAY_MS, MAX_RETRY_DELAY_MS);
+    private final PipelineMetrics metrics;
+    private final List<OnWritesCommittedListener> listeners = new ArrayList<>();
+    // Documents superseded after the draining batch was read; their drained copies are stale
+    private final Set<String> supersededWhileDraining = new HashSet<>();
+
+    // Accessed only on the executor
+    private WriteJournal journal;
+
+    private int depth;
+    private boolean draining;
+    private boolean drainScheduled;
+    // After a permanent failure in a batch, commit one write at a time to find the bad one
+    private boolean isolating;
+
+    public static synchronized PendingWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new PendingWriteQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PendingWriteQueue(Context context) {
+        journalFile = new File(context.getFilesDir(), JOURNAL_FILE);
+        metrics = PipelineMetrics.getInstance(context);
+        executor.execute(() -> {
+            try {
+                journal = WriteJournal.open(journalFile);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open journal", e);
+            }
+            publishDepth(true);
+        });
+
+        ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                mainHandler.post(() -> {
+                    backoff.reset();
+                    scheduleDrain(0);
+                });
+            }
+        });
+    }
+
+    public void addListener(OnWritesCommittedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OnWritesCommittedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Whether a failed write is worth retrying later, as opposed to being rejected for good.
+     */
+    public static boolean isRetryable(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) return true;
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case ABORTED:
+            case RESOURCE_EXHAUSTED:
+            case INTERNAL:
+            case UNKNOWN:
+            case CANCELLED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Journals a write for retry, replacing any queued write to the same document.
+     */
+    public void enqueue(String collection, String documentId, int op, Map<String, Object> data) {
+        String payload;
+        try {
+            payload = encode(op, data).toString();
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Cannot journal write to " + collection + "/" + documentId, e);
+            return;
+        }
+        metrics.increment(PipelineMetrics.JOURNAL_APPENDED);
+        executor.execute(() -> {
+            if (journal == null) return;
+            try {
+                journal.put(collection + "/" + documentId, payload);
+            } catch (IOException e) {
+                Log.e(TAG, "Journal append failed", e);
+            }
+            publishDepth(true);
+        });
+    }
+
+    /**
+     * Drops any queued write to a document because a newer one is being sent directly.
+     */
+    public void supersede(String collection, String documentId) {
+        if (draining) {
+            supersededWhileDraining.add(collection + "/" + documentId);
+        }
+        executor.execute(() -> {
+            if (journal == null) return;
+            try {
+                journal.remove(collection + "/" + documentId);
+            } catch (IOException e) {
+                Log.e(TAG, "Journal remove failed", e);
+            }
+            publishDepth(false);
+        });
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    private void publishDepth(boolean drain) {
+        int size = journal != null ? journal.size() : 0;
+        mainHandler.post(() -> {
+            depth = size;
+            metrics.setGauge(PipelineMetrics.JOURNAL_DEPTH, size);
+            // A retry that is already waiting keeps its backoff
+            if (drain && size > 0 && !drainScheduled) {
+                scheduleDrain(backoff.getAttempt() == 0 ? 0 : backoff.nextDelayMs());
+            }
+        });
+    }
+
+    private void scheduleDrain(long delayMs) {
+        mainHandler.removeCallbacks(drainRunnable);
+        drainScheduled = true;
+        mainHandler.postDelayed(drainRunnable, delayMs);
+    }
+
+    private void drain() {
+        drainScheduled = false;
+        if (draining) return;
+        draining = true;
+        // Supersedes queued before this point reach the journal before the peek
+        supersededWhileDraining.clear();
+        int limit = isolating ? 1 : BATCH_LIMIT;
+        executor.execute(() -> {
+            List<WriteJournal.Entry> entries = journal != null ? journal.peek(limit) : new ArrayList<>();
+            mainHandler.post(() -> commit(entries));
+        });
+    }
+
+    private void commit(List<WriteJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            draining = false;
+            return;
+        }
+
+        WriteBatch batch = db.batch();
+        Map<String, List<Map<String, Object>>> byCollection = new HashMap<>();
+        List<WriteJournal.Entry> unreadable = new ArrayList<>();
+        List<WriteJournal.Entry> stale = new ArrayList<>();
+        for (WriteJournal.Entry entry : entries) {
+            if (supersededWhileDraining.contains(entry.getKey())) {
+                // A newer write was sent directly after the peek; committing this copy would overwrite it
+                stale.add(entry);
+                continue;
+            }
+            try {
+                JSONObject payload = new JSONObject(entry.getPayload());
+                Map<String, Object> data = decodeMap(payload.getJSONObject("data"));
+                DocumentReference reference = db.document(entry.getKey());
+                switch (payload.getInt("op")) {
+                    case OP_MERGE:
+                        batch.set(reference, data, SetOptions.merge());
+                        break;
+                    case OP_UPDATE:
+                        batch.update(reference, data);
+                        break;
+                    default:
+                        batch.set(reference, data);
+                }
+                String collection = reference.getParent().getPath();
+                List<Map<String, Object>> documents = byCollection.get(collection);
+                if (documents == null) {
+                    documents = new ArrayList<>();
+                    byCollection.put(collection, documents);
+                }
+                documents.add(data);
+            } catch (JSONException e) {
+                Log.e(TAG, "Dropping unreadable journal entry " + entry.getKey(), e);
+                unreadable.add(entry);
+            }
+        }
+
+        batch.commit()
+                .addOnSuccessListener(unused -> {
+                    backoff.reset();
+                    isolating = false;
+                    metrics.increment(PipelineMetrics.JOURNAL_DRAINED, entries.size() - unreadable.size() - stale.size());
+                    Log.d(TAG, "Drained " + entries.size() + " journaled writes");
+                    for (Map.Entry<String, List<Map<String, Object>>> entry : byCollection.entrySet()) {
+                        for (OnWritesCommittedListener listener : new ArrayList<>(listeners)) {
+                            listener.onWritesCommitted(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    removeCommitted(entries);
+                })
+                .addOnFailureListener(e -> {
+                    if (isRetryable(e)) {
+                        long delay = backoff.nextDelayMs();
+                        Log.w(TAG, "Drain failed, retrying in " + delay + " ms", e);
+                        draining = false;
+                        scheduleDrain(delay);
+                    } else if (entries.size() == 1) {
+                        Log.e(TAG, "Dropping rejected write to " + entries.get(0).getKey(), e);
+                        metrics.increment(PipelineMetrics.JOURNAL_DROPPED);
+                        removeCommitted(entries);
+                    } else {
+                        Log.w(TAG, "Batch rejected, retrying writes one at a time", e);
+                        isolating = true;
+                        draining = false;
+                        scheduleDrain(0);
+                    }
+                });
+    }
+
+    private void removeCommitted(List<WriteJournal.Entry> entries) {
+        executor.execute(() -> {
+            try {
+                for (WriteJournal.Entry entry : entries) {
+                    // A newer copy journaled while this one was in flight is still owed
+                    journal.removeIfUnchanged(entry.getKey(), entry.getPayload());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Journal remove failed", e);
+            }
+            mainHandler.post(() -> draining = false);
+            publishDepth(true);
+        });
+    }
+
+    private static JSONObject encode(int op, Map<String, Object> data) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("op", op);
+        payload.put("data", encodeMap(data));
+        return payload;
+    }
+
+    private static JSONObject encodeMap(Map<?, ?> map) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            json.put((String) entry.getKey(), encodeValue(entry.getValue()));
+        }
+        return json;
+    }
+
+    private static Object encodeValue(Object value) throws JSONException {
+        if (value == null) {
+            return JSONObject.NULL;
+        } else if (value instanceof String || value instanceof Boolean || value instanceof Number) {
+            return value;
+        } else if (value instanceof Timestamp || value instanceof Date) {
+            Date date = value instanceof Timestamp ? ((Timestamp) value).toDate() : (Date) value;
+            return new JSONObject().put(TYPE_TIMESTAMP, date.getTime());
+        } else if (FieldValue.serverTimestamp().equals(value)) {
+            return new JSONObject().put(TYPE_SERVER_TIMESTAMP, true);
+        } else if (value instanceof List) {
+            JSONArray array = new JSONArray();
+            for (Object item : (List<?>) value) {
+                array.put(encodeValue(item));
+            }
+            return array;
+        } else if (value instanceof Map) {
+            return encodeMap((Map<?, ?>) value);
+        }
+        throw new IllegalArgumentException("Cannot journal " + value.getClass().getSimpleName());
+    }
+
+    private static Map<String, Object> decodeMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, decodeValue(json.get(key)));
+        }
+        return map;
+    }
+
+    private static Object decodeValue(Object value) throws JSONException {
+        if (value == JSONObject.NULL) {
+            return null;
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(decodeValue(array.get(i)));
+            }
+            return list;
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            if (object.has(TYPE_TIMESTAMP)) {
+                return new Timestamp(new Date(object.getLong(TYPE_TIMESTAMP)));
+            } else if (object.has(TYPE_SERVER_TIMESTAMP)) {
+                return FieldValue.serverTimestamp();
+            }
+            return decodeMap(object);
+        }
+        return value;
+    }
+}
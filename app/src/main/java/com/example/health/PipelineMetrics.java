@@ -0,0 +1,199 @@
+package com.example.health;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide latency histograms and throughput counters for the live heart-rate pipeline, shown on
+ * {@link MetricsDebugActivity} and periodically dumped to {@code files/metrics/pipeline.json}.
+ * Must be used from the main thread.
+ */
+public class PipelineMetrics {
+
+    private static final String TAG = "PipelineMetrics";
+    private static final String DIRECTORY = "metrics";
+    private static final String DUMP_FILE = "pipeline.json";
+
+    // Watch sample time to snapshot delivery in the service (includes watch/phone clock skew)
+    public static final String SAMPLE_TO_SNAPSHOT = "sample_to_snapshot";
+    // Snapshot delivery to the first frame that draws the new value
+    public static final String SNAPSHOT_TO_DISPLAY = "snapshot_to_display";
+    // Watch sample time to the Firestore commit that contains it
+    public static final String SAMPLE_TO_PERSISTED = "sample_to_persisted";
+    // Duration of a single measurement batch commit
+    public static final String PERSIST_COMMIT = "persist_commit";
+    // Start/stop command write to its server commit
+    public static final String COMMAND_WRITE = "command_write";
+    // Start/stop command write to the watch acknowledging its command ID
+    public static final String COMMAND_ACK = "command_ack";
+    // Start request to the first new sample from the watch
+    public static final String COMMAND_TO_FIRST_SAMPLE = "command_to_first_sample";
+
+    public static final String SAMPLES_RECEIVED = "samples_received";
+    public static final String SAMPLES_DUPLICATE = "samples_duplicate";
+    public static final String UI_RENDERS = "ui_renders";
+    // Live samples folded into an already scheduled frame instead of rendering on their own
+    public static final String UI_UPDATES_COALESCED = "ui_updates_coalesced";
+    public static final String SAMPLES_PERSISTED = "samples_persisted";
+    public static final String COMMANDS_SENT = "commands_sent";
+    public static final String COMMANDS_FAILED = "commands_failed";
+    // Start/stop requests replaced by a later one before they were sent
+    public static final String COMMANDS_COALESCED = "commands_coalesced";
+    public static final String JOURNAL_APPENDED = "journal_appended";
+    public static final String JOURNAL_DRAINED = "journal_drained";
+    public static final String JOURNAL_DROPPED = "journal_dropped";
+
+    // Writes waiting in the retry journal
+    public static final String JOURNAL_DEPTH = "journal_depth";
+
+    private static final String[] HISTOGRAMS = {SAMPLE_TO_SNAPSHOT, SNAPSHOT_TO_DISPLAY, SAMPLE_TO_PERSISTED,
+            PERSIST_COMMIT, COMMAND_WRITE, COMMAND_ACK, COMMAND_TO_FIRST_SAMPLE};
+    private static final String[] COUNTERS = {SAMPLES_RECEIVED, SAMPLES_DUPLICATE, UI_RENDERS,
+            UI_UPDATES_COALESCED, SAMPLES_PERSISTED, COMMANDS_SENT, COMMANDS_FAILED, COMMANDS_COALESCED, JOURNAL_APPENDED,
+            JOURNAL_DRAINED, JOURNAL_DROPPED};
+    private static final String[] GAUGES = {JOURNAL_DEPTH};
+
+    private static PipelineMetrics instance;
+
+    private final File dumpFile;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final Map<String, Long> gauges = new LinkedHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+    private long windowStartedAt = SystemClock.elapsedRealtime();
+
+    public static synchronized PipelineMetrics getInstance(Context context) {
+        if (instance == null) {
+            instance = new PipelineMetrics(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PipelineMetrics(Context context) {
+        dumpFile = new File(new File(context.getFilesDir(), DIRECTORY), DUMP_FILE);
+        for (String name : HISTOGRAMS) {
+            histograms.put(name, new LatencyHistogram());
+        }
+        for (String name : COUNTERS) {
+            counters.put(name, 0L);
+        }
+        for (String name : GAUGES) {
+            gauges.put(name, 0L);
+        }
+    }
+
+    public void record(String histogram, long latencyMs) {
+        histograms.get(histogram).record(latencyMs);
+    }
+
+    public void increment(String counter) {
+        increment(counter, 1);
+    }
+
+    public void increment(String counter, long delta) {
+        counters.put(counter, counters.get(counter) + delta);
+    }
+
+    public void setGauge(String gauge, long value) {
+        gauges.put(gauge, value);
+    }
+
+    /**
+     * Wall-clock time the metrics started collecting; samples older than this were not observed live.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (String name : COUNTERS) {
+            counters.put(name, 0L);
+        }
+        windowStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            long windowMs = SystemClock.elapsedRealtime() - windowStartedAt;
+            json.put("startedAt", startedAt);
+            json.put("windowMs", windowMs);
+
+            JSONObject latencies = new JSONObject();
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                JSONObject stats = new JSONObject();
+                stats.put("count", histogram.getCount());
+                stats.put("min", histogram.getMin());
+                stats.put("mean", Math.round(histogram.getMean()));
+                stats.put("p50", histogram.getPercentile(50));
+                stats.put("p95", histogram.getPercentile(95));
+                stats.put("p99", histogram.getPercentile(99));
+                stats.put("max", histogram.getMax());
+                latencies.put(entry.getKey(), stats);
+            }
+            json.put("latencyMs", latencies);
+
+            JSONObject counts = new JSONObject();
+            JSONObject perMinute = new JSONObject();
+            double minutes = Math.max(1, windowMs) / 60_000.0;
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue());
+                perMinute.put(entry.getKey(), Math.round(entry.getValue() / minutes * 10) / 10.0);
+            }
+            json.put("counters", counts);
+            json.put("perMinute", perMinute);
+            json.put("gauges", new JSONObject(gauges));
+        } catch (JSONException e) {
+            Log.e(TAG, "Serialization failed", e);
+        }
+        return json;
+    }
+
+    /**
+     * Writes the current snapshot to {@code files/metrics/pipeline.json} on a background thread,
+     * replacing the previous dump atomically.
+     */
+    public void dump() {
+        String content = toJson().toString();
+        executor.execute(() -> {
+            File directory = dumpFile.getParentFile();
+            File temp = new File(directory, DUMP_FILE + ".tmp");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                Log.e(TAG, "Cannot create " + directory);
+                return;
+            }
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            } catch (IOException e) {
+                Log.e(TAG, "Dump failed", e);
+                return;
+            }
+            if (!temp.renameTo(dumpFile)) {
+                Log.e(TAG, "Cannot replace " + dumpFile);
+            }
+        });
+    }
+
+    public File getDumpFile() {
+        return dumpFile;
+    }
+}
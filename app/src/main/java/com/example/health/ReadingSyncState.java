@@ -0,0 +1,77 @@
+package com.example.health;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * How much of a patient's {@code heart_rate_readings} is already replicated into the local store:
+ * the newest and oldest synced reading times, and whether paging has reached the oldest reading.
+ * Everything between the two bounds is local, so the history screen only has to fetch readings newer
+ * than the watermark and, on demand, older than the oldest bound.
+ */
+public final class ReadingSyncState {
+
+    private static final String PREFS_NAME = "reading_sync";
+    private static final String SUFFIX_NEWEST = "_newest";
+    private static final String SUFFIX_OLDEST = "_oldest";
+    private static final String SUFFIX_COMPLETE = "_complete";
+
+    private final String key;
+    private final ReadingWatermark watermark;
+
+    private ReadingSyncState(String key, ReadingWatermark watermark) {
+        this.key = key;
+        this.watermark = watermark;
+    }
+
+    public static ReadingSyncState load(Context context, String patientKey, String pairingCode) {
+        String key = patientKey + "_" + pairingCode;
+        SharedPreferences prefs = prefs(context);
+        return new ReadingSyncState(key, new ReadingWatermark(
+                prefs.getLong(key + SUFFIX_NEWEST, Long.MIN_VALUE),
+                prefs.getLong(key + SUFFIX_OLDEST, Long.MAX_VALUE),
+                prefs.getBoolean(key + SUFFIX_COMPLETE, false)));
+    }
+
+    public void save(Context context) {
+        prefs(context).edit()
+                .putLong(key + SUFFIX_NEWEST, watermark.getNewest())
+                .putLong(key + SUFFIX_OLDEST, watermark.getOldest())
+                .putBoolean(key + SUFFIX_COMPLETE, watermark.isComplete())
+                .apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public boolean hasSynced() {
+        return watermark.hasSynced();
+    }
+
+    /**
+     * See {@link ReadingWatermark#include(long, long)}.
+     */
+    public void include(long fromMillis, long toMillis) {
+        watermark.include(fromMillis, toMillis);
+    }
+
+    /**
+     * See {@link ReadingWatermark#markComplete()}; a sync that found nothing stays incomplete.
+     */
+    public void markComplete() {
+        watermark.markComplete();
+    }
+
+    public long getNewest() {
+        return watermark.getNewest();
+    }
+
+    public long getOldest() {
+        return watermark.getOldest();
+    }
+
+    public boolean isComplete() {
+        return watermark.isComplete();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.health;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
@@ -10,7 +11,10 @@ import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.example.health.databinding.ActivitySignInBinding;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthInvalidUserException;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
 import java.util.Timer;
@@ -23,6 +27,7 @@ public class SignInActivity extends AppCompatActivity {
     private SharedPreferences sharedPref;
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private Timer emailVerificationTimer;
+    private PatientRepository repository;
 
     public static final String PREFS_NAME = "AuthPrefs";
     public static final String PREF_STAY_CONNECTED = "stay_connected";
@@ -42,11 +47,20 @@ public class SignInActivity extends AppCompatActivity {
 
         auth = FirebaseAuth.getInstance();
         sharedPref = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        repository = PatientRepository.getInstance(this);
 
-        if (sharedPref.getBoolean(PREF_STAY_CONNECTED, false) && auth.getCurrentUser() != null) {
-            String email = auth.getCurrentUser().getEmail();
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (sharedPref.getBoolean(PREF_STAY_CONNECTED, false) && currentUser != null) {
+            String email = currentUser.getEmail();
             if (email != null) {
-                checkEmailVerificationWithReload(email);
+                LaunchRoute cachedRoute = currentUser.isEmailVerified()
+                        ? LaunchRoute.load(sharedPref, currentUser.getUid()) : null;
+                if (cachedRoute != null) {
+                    revalidateInBackground(currentUser, email);
+                    navigateTo(cachedRoute, email);
+                } else {
+                    checkEmailVerificationWithReload(email);
+                }
                 return;
             }
         }
@@ -77,6 +91,7 @@ public class SignInActivity extends AppCompatActivity {
         binding.signUpTextView.setOnClickListener(v -> startActivity(new Intent(this, SignUpActivity.class)));
 
         binding.forgotPasswordTextView.setOnClickListener(v -> startActivity(new Intent(this, ForgotPasswordActivity.class)));
+        reportFullyDrawn();
     }
 
     private boolean validateInput(String email, String password) {
@@ -117,29 +132,73 @@ public class SignInActivity extends AppCompatActivity {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) return;
 
-        currentUser.reload().addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                if (currentUser.isEmailVerified()) {
-                    updateFirestoreVerificationStatus(email);
-                } else {
-                    showVerificationReminder(email);
-                    startEmailVerificationPolling(email);
+        // Reload, the verification flag and the repository snapshots are independent, so they run together
+        boolean alreadyVerified = currentUser.isEmailVerified();
+        Task<Void> reloadTask = currentUser.reload();
+        Task<Void> verifiedTask = alreadyVerified ? markVerified(email) : Tasks.forResult(null);
+        repository.start(currentUser.getUid());
+        Task<Void> repositoryTask = repository.whenLoaded();
+
+        Tasks.whenAllComplete(reloadTask, verifiedTask, repositoryTask).addOnCompleteListener(this, all -> {
+            if (!reloadTask.isSuccessful()) {
+                Log.e(TAG, "Error reloading user", reloadTask.getException());
+                showVerificationReminder(email);
+            } else if (!currentUser.isEmailVerified()) {
+                showVerificationReminder(email);
+                startEmailVerificationPolling(email);
+            } else {
+                if (!alreadyVerified) {
+                    markVerified(email);
                 }
+                completeSignInProcess(email);
+            }
+        });
+    }
+
+    /**
+     * Re-checks the account and setup state after routing from a cached {@link LaunchRoute}. Not tied
+     * to this activity, which has already finished by the time the results arrive.
+     */
+    private void revalidateInBackground(FirebaseUser currentUser, String email) {
+        SharedPreferences prefs = sharedPref;
+        PatientRepository repo = repository;
+        Context appContext = getApplicationContext();
+        String uid = currentUser.getUid();
+
+        currentUser.reload().addOnFailureListener(e -> {
+            if (e instanceof FirebaseAuthInvalidUserException) {
+                // Account deleted or disabled: the cached route must not be trusted on the next launch
+                LaunchRoute.clear(prefs);
+                repo.stop();
+                HeartRateMonitorService.endSession(appContext);
+                FirebaseAuth.getInstance().signOut();
             } else {
-                Log.e(TAG, "Error reloading user", task.getException());
-                showVerificationReminder(email);
+                Log.w(TAG, "Background reload failed", e);
             }
         });
+        markVerified(email);
+        repo.start(uid);
+        // Cached once the server confirms every entity; a cache-only snapshot may still be stale
+        PatientRepository.Listener saveRoute = new PatientRepository.Listener() {
+            @Override
+            public void onRepositoryChanged(PatientRepository current) {
+                if (!uid.equals(current.getUserId())) {
+                    current.removeListener(this);
+                    return;
+                }
+                if (!current.isLoaded() || current.hasLoadErrors() || !current.isServerConfirmed()) return;
+                current.removeListener(this);
+                LaunchRoute.fromRepository(uid, current).save(prefs);
+            }
+        };
+        repo.addListener(saveRoute);
+        saveRoute.onRepositoryChanged(repo);
     }
 
-    private void updateFirestoreVerificationStatus(String email) {
-        db.collection("users").document(email)
+    private Task<Void> markVerified(String email) {
+        return db.collection("users").document(email)
                 .update("isVerified", true)
-                .addOnSuccessListener(unused -> completeSignInProcess(email))
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error updating verification status", e);
-                    completeSignInProcess(email);
-                });
+                .addOnFailureListener(e -> Log.e(TAG, "Error updating verification status", e));
     }
 
     private void startEmailVerificationPolling(String email) {
@@ -153,7 +212,8 @@ public class SignInActivity extends AppCompatActivity {
                     user.reload().addOnCompleteListener(task -> {
                         if (task.isSuccessful() && user.isEmailVerified()) {
                             runOnUiThread(() -> {
-                                updateFirestoreVerificationStatus(email);
+                                markVerified(email);
+                                completeSignInProcess(email);
                                 emailVerificationTimer.cancel();
                             });
                         }
@@ -220,59 +280,35 @@ public class SignInActivity extends AppCompatActivity {
             redirectToSignIn();
             return;
         }
-        String userId = user.getUid();
 
-        db.collection("patients")
-                .whereEqualTo("userId", userId)
-                .limit(1)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    if (querySnapshot.isEmpty()) {
-                        navigateToPatientInfoActivity(email);
-                    } else {
-                        String patientDocId = querySnapshot.getDocuments().get(0).getId();
-                        checkDevicePairingStatus(email, patientDocId);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error checking patient records", e);
-                    navigateToPatientInfoActivity(email);
-                });
+        // The repository listeners stay attached for the session, so later screens read from memory
+        repository.start(user.getUid());
+        repository.whenLoaded().addOnSuccessListener(this, unused -> routeFromRepository(user.getUid(), email));
     }
 
-    private void checkDevicePairingStatus(String email, String patientDocId) {
-        FirebaseUser user = auth.getCurrentUser();
-        if (user == null) {
-            redirectToSignIn();
-            return;
+    private void routeFromRepository(String uid, String email) {
+        LaunchRoute route = LaunchRoute.fromRepository(uid, repository);
+        // A failed listener or a cache-only snapshot looks like a missing entity; routing on it once is
+        // fine, caching it is not
+        if (!repository.hasLoadErrors() && repository.isServerConfirmed()) {
+            route.save(sharedPref);
         }
-        String userId = user.getUid();
+        navigateTo(route, email);
+    }
 
-        db.collection("wearDevices")
-                .whereEqualTo("userId", userId)
-                .whereEqualTo("status", "active")
-                .limit(1)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    if (querySnapshot.isEmpty()) {
-                        if (patientDocId != null) {
-                            navigateToPairingActivity(email, patientDocId);
-                        } else {
-                            navigateToPatientInfoActivity(email);
-                        }
-                    } else {
-                        sharedPref.edit().putBoolean(PREF_PAIRING_COMPLETE, true).apply();
-                        navigateToMainActivity(email);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error checking wear device records", e);
-                    if (patientDocId != null) {
-                        navigateToPairingActivity(email, patientDocId);
-                    } else {
-                        navigateToPatientInfoActivity(email);
-                    }
-                });
+    private void navigateTo(LaunchRoute route, String email) {
+        switch (route.destination) {
+            case LaunchRoute.MAIN:
+                sharedPref.edit().putBoolean(PREF_PAIRING_COMPLETE, true).apply();
+                navigateToMainActivity(email);
+                break;
+            case LaunchRoute.PAIRING:
+                navigateToPairingActivity(email, route.patientDocId);
+                break;
+            default:
+                navigateToPatientInfoActivity(email);
+                break;
+        }
     }
 
     private void navigateToMainActivity(String email) {
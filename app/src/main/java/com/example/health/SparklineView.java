@@ -0,0 +1,93 @@
+package com.example.health;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Minimal trend line drawn straight from a {@link HeartRateRingBuffer}. The path and paints are
+ * reused between frames, so drawing allocates nothing.
+ */
+public class SparklineView extends View {
+
+    // Keep a little headroom so a flat line is not drawn on the view edge
+    private static final float MIN_VALUE_RANGE = 10f;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint latestPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private HeartRateRingBuffer buffer;
+
+    public SparklineView(Context context) {
+        this(context, null);
+    }
+
+    public SparklineView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(2f * density);
+        linePaint.setStrokeJoin(Paint.Join.ROUND);
+        linePaint.setColor(ContextCompat.getColor(context, R.color.heart_rate_normal));
+        latestPaint.setStyle(Paint.Style.FILL);
+        latestPaint.setColor(ContextCompat.getColor(context, R.color.heart_rate_high));
+    }
+
+    public void setBuffer(HeartRateRingBuffer buffer) {
+        this.buffer = buffer;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (buffer == null || buffer.size() < 2) return;
+
+        float left = getPaddingLeft();
+        float top = getPaddingTop() + linePaint.getStrokeWidth();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom() - 2 * linePaint.getStrokeWidth();
+        if (width <= 0 || height <= 0) return;
+
+        int size = buffer.size();
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            float value = buffer.valueAt(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        float range = max - min;
+        if (range < MIN_VALUE_RANGE) {
+            min -= (MIN_VALUE_RANGE - range) / 2f;
+            range = MIN_VALUE_RANGE;
+        }
+
+        // The x axis always spans the buffer window ending at the latest sample
+        long windowEnd = buffer.latestTimestamp();
+        long windowStart = windowEnd - buffer.getWindowMillis();
+        float xScale = width / buffer.getWindowMillis();
+        float yScale = height / range;
+
+        path.rewind();
+        float x = 0;
+        float y = 0;
+        for (int i = 0; i < size; i++) {
+            x = left + (buffer.timestampAt(i) - windowStart) * xScale;
+            y = top + height - (buffer.valueAt(i) - min) * yScale;
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+        canvas.drawPath(path, linePaint);
+        canvas.drawCircle(x, y, linePaint.getStrokeWidth() * 1.5f, latestPaint);
+    }
+}
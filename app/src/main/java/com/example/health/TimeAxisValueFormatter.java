@@ -0,0 +1,55 @@
+package com.example.health;
+
+import com.github.mikephil.charting.components.AxisBase;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Labels an x-axis whose values are seconds relative to a base epoch. The chart only asks for labels
+ * of the ticks it draws, so nothing is formatted per data point. Pattern detail follows the tick
+ * spacing: times of day below an hour, dates with times below a day, dates only beyond that.
+ */
+public class TimeAxisValueFormatter extends ValueFormatter {
+
+    private static final long HOUR_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long DAY_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    // DateTimeFormatter is immutable and thread-safe; build each once, on first use
+    private static final class Formatters {
+        static final ZoneId ZONE = ZoneId.systemDefault();
+        static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm", Locale.getDefault()).withZone(ZONE);
+        static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("MMM dd HH:mm", Locale.getDefault()).withZone(ZONE);
+        static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MMM dd", Locale.getDefault()).withZone(ZONE);
+    }
+
+    private final long baseEpochMillis;
+
+    public TimeAxisValueFormatter(long baseEpochMillis) {
+        this.baseEpochMillis = baseEpochMillis;
+    }
+
+    public static float toX(long timestampMillis, long baseEpochMillis) {
+        return (timestampMillis - baseEpochMillis) / 1000f;
+    }
+
+    public static long toTimestamp(float x, long baseEpochMillis) {
+        return baseEpochMillis + (long) (x * 1000.0);
+    }
+
+    @Override
+    public String getAxisLabel(float value, AxisBase axis) {
+        Instant instant = Instant.ofEpochMilli(toTimestamp(value, baseEpochMillis));
+        float step = axis.mEntryCount > 1 ? axis.mEntries[1] - axis.mEntries[0] : axis.mAxisRange;
+        if (step < HOUR_SECONDS) {
+            return Formatters.TIME.format(instant);
+        } else if (step < DAY_SECONDS) {
+            return Formatters.DATE_TIME.format(instant);
+        }
+        return Formatters.DATE.format(instant);
+    }
+}
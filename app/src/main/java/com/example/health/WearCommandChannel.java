@@ -0,0 +1,161 @@
+package com.example.health;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Start/stop commands to one wear device through its {@code wearDevices} document. Each command is
+ * written with a strictly increasing {@code commandId}; the watch acknowledges by writing the highest
+ * ID it has applied to {@code ackedCommandId}, which is timed as the command's round trip. Requests
+ * are held for {@link #COALESCE_DELAY_MS} and while a write is in flight, so rapid toggles send only
+ * the final intent, or nothing if it matches what the watch was last told. The last issued ID is kept
+ * per device so IDs keep increasing across restarts. Must be used from the main thread.
+ */
+public class WearCommandChannel {
+
+    private static final String TAG = "WearCommandChannel";
+    private static final String PREFS_NAME = "wear_commands";
+    static final long COALESCE_DELAY_MS = 250L;
+
+    public static final String START = "start_measurement";
+    public static final String STOP = "stop_measurement";
+
+    public interface Listener {
+        /**
+         * The write for {@code command} was rejected and will not be retried.
+         */
+        void onCommandFailed(String command);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable sendPending = () -> {
+        sendScheduled = false;
+        sendPending();
+    };
+    private final SharedPreferences prefs;
+    private final FirebaseFirestore db;
+    private final PendingWriteQueue retryQueue;
+    private final PipelineMetrics metrics;
+    private final String collection;
+    private final String deviceId;
+    private final Listener listener;
+    private final CommandCoalescer commands;
+    private int reportedCoalesced;
+    private boolean sendScheduled;
+
+    public WearCommandChannel(Context context, FirebaseFirestore db, PendingWriteQueue retryQueue, PipelineMetrics metrics,
+                              String collection, String deviceId, Listener listener) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.db = db;
+        this.retryQueue = retryQueue;
+        this.metrics = metrics;
+        this.collection = collection;
+        this.deviceId = deviceId;
+        this.listener = listener;
+        this.commands = new CommandCoalescer(prefs.getLong(deviceId, 0));
+    }
+
+    public void request(String command) {
+        commands.request(command);
+        int coalesced = commands.getCoalescedCount();
+        if (coalesced > reportedCoalesced) {
+            metrics.increment(PipelineMetrics.COMMANDS_COALESCED);
+            reportedCoalesced = coalesced;
+        }
+        handler.removeCallbacks(sendPending);
+        handler.postDelayed(sendPending, COALESCE_DELAY_MS);
+        sendScheduled = true;
+    }
+
+    /**
+     * Sends any held intent right away, e.g. before the channel is dropped for another device.
+     */
+    public void flush() {
+        handler.removeCallbacks(sendPending);
+        sendScheduled = false;
+        sendPending();
+    }
+
+    /**
+     * Whether a command is held back or its write has not completed, i.e. the device document may not
+     * reflect the latest intent yet.
+     */
+    public boolean isSettling() {
+        return commands.hasPending() || commands.isInFlight();
+    }
+
+    /**
+     * Feeds a snapshot of the device document: adopts IDs written elsewhere and times acks.
+     */
+    public void onDeviceSnapshot(DocumentSnapshot doc) {
+        if (doc.getMetadata().hasPendingWrites()) return;
+
+        Long commandId = doc.getLong("commandId");
+        if (commandId != null) {
+            commands.observe(commandId, doc.getString("command"));
+        }
+        Long ackedId = doc.getLong("ackedCommandId");
+        if (ackedId != null) {
+            long roundTrip = commands.onAck(ackedId, SystemClock.elapsedRealtime());
+            if (roundTrip >= 0) {
+                metrics.record(PipelineMetrics.COMMAND_ACK, roundTrip);
+                Log.d(TAG, "Command " + ackedId + " acked after " + roundTrip + " ms");
+            }
+        }
+    }
+
+    private void sendPending() {
+        long sentAt = SystemClock.elapsedRealtime();
+        long id = commands.next(sentAt);
+        if (id < 0) return;
+        String command = commands.getLastSent();
+        prefs.edit().putLong(deviceId, id).apply();
+        metrics.increment(PipelineMetrics.COMMANDS_SENT);
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("command", command);
+        updates.put("commandId", id);
+        updates.put("status", START.equals(command) ? "measuring" : "idle");
+        updates.put("lastUpdated", FieldValue.serverTimestamp());
+
+        retryQueue.supersede(collection, deviceId);
+        db.collection(collection).document(deviceId)
+                .update(updates)
+                .addOnSuccessListener(unused -> {
+                    metrics.record(PipelineMetrics.COMMAND_WRITE, SystemClock.elapsedRealtime() - sentAt);
+                    onWriteFinished(id, true);
+                })
+                .addOnFailureListener(e -> {
+                    metrics.increment(PipelineMetrics.COMMANDS_FAILED);
+                    if (PendingWriteQueue.isRetryable(e)) {
+                        // The journaled write still carries this ID; a newer command supersedes it
+                        Log.w(TAG, "Command " + id + " failed, journaling for retry", e);
+                        retryQueue.enqueue(collection, deviceId, PendingWriteQueue.OP_UPDATE, updates);
+                        onWriteFinished(id, true);
+                        return;
+                    }
+                    Log.e(TAG, "Command " + id + " failed", e);
+                    onWriteFinished(id, false);
+                    listener.onCommandFailed(command);
+                });
+    }
+
+    private void onWriteFinished(long id, boolean delivered) {
+        commands.onWriteFinished(id, delivered);
+        // Intents that arrived while the write was in flight go out now
+        if (commands.hasPending() && !sendScheduled) {
+            sendPending();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Macrobenchmarks and baseline profile generation for :app. Needs a connected device (API 28+) and a
+// test account that has completed pairing, passed as instrumentation arguments, e.g.
+// ./gradlew :app:generateReleaseBaselineProfile \
+//     -Pandroid.testInstrumentationRunnerArguments.healthEmail=... \
+//     -Pandroid.testInstrumentationRunnerArguments.healthPassword=...
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.kotlin.android)
+    alias(libs.plugins.androidx.baselineprofile)
+}
+
+android {
+    namespace = "com.example.health.baselineprofile"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    targetProjectPath = ":app"
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+    kotlinOptions {
+        jvmTarget = "11"
+    }
+}
+
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.androidx.junit)
+    implementation(libs.androidx.uiautomator)
+    implementation(libs.androidx.benchmark.macro.junit4)
+}
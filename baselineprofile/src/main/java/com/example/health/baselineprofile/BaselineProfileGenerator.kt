@@ -0,0 +1,30 @@
+package com.example.health.baselineprofile
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Records the cold start → dashboard → live heart rate → history journey into the baseline profile
+ * shipped with :app. Run with `./gradlew :app:generateReleaseBaselineProfile`.
+ */
+@RunWith(AndroidJUnit4::class)
+@LargeTest
+class BaselineProfileGenerator {
+
+    @get:Rule
+    val rule = BaselineProfileRule()
+
+    @Test
+    fun generate() = rule.collect(packageName = TARGET_PACKAGE, includeInStartupProfile = true) {
+        pressHome()
+        startActivityAndWait()
+        signInIfNeeded()
+        openHeartRate()
+        openHistory()
+        panHistory()
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.health.baselineprofile
+
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.platform.app.InstrumentationRegistry
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.Until
+
+const val TARGET_PACKAGE = "com.example.health"
+
+private const val SCREEN_TIMEOUT_MS = 15_000L
+
+/**
+ * Reads a required instrumentation argument, e.g. `healthEmail`.
+ */
+fun requireArgument(name: String): String =
+    InstrumentationRegistry.getArguments().getString(name)
+        ?: error("Missing instrumentation argument '$name'")
+
+/**
+ * Signs in with the test account if the sign-in form is showing, ticking "stay connected" so later
+ * cold starts route straight to the dashboard. Does nothing if a session is already stored.
+ */
+fun MacrobenchmarkScope.signInIfNeeded() {
+    val email = device.wait(Until.findObject(By.res(TARGET_PACKAGE, "emailEditText")), 2_000L) ?: return
+    email.text = requireArgument("healthEmail")
+    device.findObject(By.res(TARGET_PACKAGE, "passwordEditText")).text = requireArgument("healthPassword")
+    val stayConnected = device.findObject(By.res(TARGET_PACKAGE, "rememberMeCheckBox"))
+    if (!stayConnected.isChecked) {
+        stayConnected.click()
+    }
+    device.findObject(By.res(TARGET_PACKAGE, "signInButton")).click()
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "btnHeartRate")), SCREEN_TIMEOUT_MS)
+}
+
+fun MacrobenchmarkScope.openHeartRate() {
+    device.wait(Until.findObject(By.res(TARGET_PACKAGE, "btnHeartRate")), SCREEN_TIMEOUT_MS).click()
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "tvHeartRateValue")), SCREEN_TIMEOUT_MS)
+}
+
+fun MacrobenchmarkScope.openHistory() {
+    device.wait(Until.findObject(By.res(TARGET_PACKAGE, "btnHistory")), SCREEN_TIMEOUT_MS).click()
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "heartRateChart")), SCREEN_TIMEOUT_MS)
+}
+
+/**
+ * Pans the history chart so paging, LTTB and chart rendering end up in the profile too.
+ */
+fun MacrobenchmarkScope.panHistory() {
+    val chart = device.findObject(By.res(TARGET_PACKAGE, "heartRateChart")) ?: return
+    repeat(3) {
+        chart.swipe(Direction.RIGHT, 0.8f)
+        device.waitForIdle()
+    }
+}
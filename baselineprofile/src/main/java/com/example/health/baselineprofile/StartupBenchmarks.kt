@@ -0,0 +1,73 @@
+package com.example.health.baselineprofile
+
+import android.content.Intent
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Cold-start time to initial and full display for each main screen, with and without the baseline
+ * profile. Time to full display relies on the screens calling reportFullyDrawn() once their data is shown.
+ */
+@RunWith(Parameterized::class)
+@LargeTest
+class StartupBenchmarks(private val compilationMode: CompilationMode) {
+
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun signIn() = measure { startActivityAndWait() }
+
+    @Test
+    fun dashboard() = measure { startActivityAndWait(screen("MainActivity")) }
+
+    @Test
+    fun heartRate() = measure { startActivityAndWait(screen("HeartRateActivity")) }
+
+    @Test
+    fun history() = measure {
+        startActivityAndWait(screen("HeartRateHistoryActivity")
+            .putExtra("USER_EMAIL", requireArgument("healthEmail"))
+            .putExtra("PAIRING_CODE", requireArgument("healthPairingCode"))
+            .putExtra("PATIENT_DOC_ID", requireArgument("healthPatientDocId")))
+    }
+
+    private fun measure(block: MacrobenchmarkScope.() -> Unit) = rule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(StartupTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.COLD,
+        iterations = 10,
+        setupBlock = {
+            if (!signedIn) {
+                startActivityAndWait()
+                signInIfNeeded()
+                signedIn = true
+            }
+            pressHome()
+        },
+        measureBlock = block
+    )
+
+    private fun screen(activity: String) = Intent().setClassName(TARGET_PACKAGE, "$TARGET_PACKAGE.$activity")
+
+    companion object {
+        private var signedIn = false
+
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}")
+        fun compilationModes(): List<CompilationMode> = listOf(
+            CompilationMode.None(),
+            CompilationMode.Partial(BaselineProfileMode.Require)
+        )
+    }
+}
@@ -22,4 +22,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Health"
 include(":app")
+include(":analytics")
+include(":baselineprofile")
  
\ No newline at end of file